@@ -0,0 +1,76 @@
+package com.aiuml.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Bounded pools for work that must not run unbounded on Tomcat request threads.
+ * Each pool rejects immediately once its queue is full instead of growing.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    @Bean
+    public ThreadPoolTaskExecutor documentParsingExecutor(
+            @Value("${aiuml.executor.parsing.threads:#{T(java.lang.Runtime).getRuntime().availableProcessors()}}") int threads,
+            @Value("${aiuml.executor.parsing.queue-capacity:200}") int queueCapacity) {
+        return boundedExecutor("parse-", threads, queueCapacity);
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor analysisExecutor(
+            @Value("${aiuml.executor.analysis.threads:16}") int threads,
+            @Value("${aiuml.executor.analysis.queue-capacity:64}") int queueCapacity) {
+        return boundedExecutor("analysis-", threads, queueCapacity);
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor patternRefinementExecutor(
+            @Value("${aiuml.executor.patterns.threads:2}") int threads,
+            @Value("${aiuml.executor.patterns.queue-capacity:50}") int queueCapacity) {
+        return boundedExecutor("patterns-", threads, queueCapacity);
+    }
+
+    // Batch bookkeeping after each run: copying results to duplicates, SSE events, starting the next run.
+    // Callers run the task themselves when the queue is full, since a dropped callback would stall the batch.
+    @Bean
+    public ThreadPoolTaskExecutor batchReportingExecutor(
+            @Value("${aiuml.executor.batch.threads:4}") int threads,
+            @Value("${aiuml.executor.batch.queue-capacity:500}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = boundedExecutor("batch-", threads, queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    // Defaults to half the cores so a signin storm leaves CPU for the rest of the API
+    @Bean
+    public ThreadPoolTaskExecutor passwordHashingExecutor(
+            @Value("${aiuml.executor.hashing.threads:#{T(java.lang.Math).max(1, T(java.lang.Runtime).getRuntime().availableProcessors() / 2)}}") int threads,
+            @Value("${aiuml.executor.hashing.queue-capacity:100}") int queueCapacity) {
+        return boundedExecutor("bcrypt-", threads, queueCapacity);
+    }
+
+    // Database writes that follow a hash (creating the account on signup), so they never hold a BCrypt thread
+    @Bean
+    public ThreadPoolTaskExecutor accountExecutor(
+            @Value("${aiuml.executor.accounts.threads:4}") int threads,
+            @Value("${aiuml.executor.accounts.queue-capacity:100}") int queueCapacity) {
+        return boundedExecutor("account-", threads, queueCapacity);
+    }
+
+    static ThreadPoolTaskExecutor boundedExecutor(String prefix, int threads, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(prefix);
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
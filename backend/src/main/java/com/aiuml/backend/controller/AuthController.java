@@ -6,16 +6,23 @@ import com.aiuml.backend.dto.SignupRequest;
 import com.aiuml.backend.model.User;
 import com.aiuml.backend.repository.UserRepository;
 import com.aiuml.backend.security.JwtUtils;
+import com.aiuml.backend.security.PasswordHashingService;
 import com.aiuml.backend.security.UserDetailsImpl;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 @RequestMapping("/api/auth")
 @RequiredArgsConstructor
@@ -25,43 +32,66 @@ public class AuthController {
     private final UserRepository userRepository;
     private final PasswordEncoder encoder;
     private final JwtUtils jwtUtils;
+    private final PasswordHashingService passwordHashing;
+    @Qualifier("accountExecutor")
+    private final ThreadPoolTaskExecutor accountExecutor;
 
     @PostMapping("/signin")
-    public ResponseEntity<?> authenticateUser(@RequestBody LoginRequest loginRequest) {
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
-
-        SecurityContextHolder.getContext().setAuthentication(authentication);
-        String jwt = jwtUtils.generateJwtToken(authentication);
+    public CompletableFuture<ResponseEntity<?>> authenticateUser(@RequestBody LoginRequest loginRequest) {
+        // BCrypt verification (and any rehash to a new cost factor) runs on the bounded hashing pool
+        return passwordHashing.submit("verify", () -> authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword())))
+                .<ResponseEntity<?>>thenApply(authentication -> {
+                    String jwt = jwtUtils.generateJwtToken(authentication);
 
-        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+                    UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
 
-        return ResponseEntity.ok(new JwtResponse(jwt,
-                userDetails.getId(),
-                userDetails.getEmail(),
-                userDetails.getEmail())); // Using email as name for now or can get from user entity
+                    return ResponseEntity.ok(new JwtResponse(jwt,
+                            userDetails.getId(),
+                            userDetails.getEmail(),
+                            userDetails.getEmail())); // Using email as name for now or can get from user entity
+                })
+                .exceptionally(AuthController::busyOrRethrow);
     }
 
     @PostMapping("/signup")
-    public ResponseEntity<?> registerUser(@RequestBody SignupRequest signUpRequest) {
+    public CompletableFuture<ResponseEntity<?>> registerUser(@RequestBody SignupRequest signUpRequest) {
         if (userRepository.findByEmail(signUpRequest.getEmail()).isPresent()) {
-            return ResponseEntity
+            return CompletableFuture.completedFuture(ResponseEntity
                     .badRequest()
-                    .body("Error: Email is already in use!");
+                    .body("Error: Email is already in use!"));
         }
 
-        // Create new user's account
-        User user = User.builder()
-                .email(signUpRequest.getEmail())
-                .name(signUpRequest.getName())
-                .password(encoder.encode(signUpRequest.getPassword()))
-                .role(User.Role.STUDENT) // Default role
-                .build();
+        // Only the hash runs on the hashing pool; the insert follows on the account pool so it never holds a
+        // BCrypt thread, and the request thread is released while the hash waits in the queue
+        return passwordHashing.submit("encode", () -> encoder.encode(signUpRequest.getPassword()))
+                .<ResponseEntity<?>>thenApplyAsync(hash -> {
+                    // Create new user's account
+                    User user = User.builder()
+                            .email(signUpRequest.getEmail())
+                            .name(signUpRequest.getName())
+                            .password(hash)
+                            .role(User.Role.STUDENT) // Default role
+                            .build();
+                    userRepository.save(user);
 
-        if (user != null) {
-            userRepository.save(user);
-        }
+                    return ResponseEntity.ok("User registered successfully!");
+                }, accountExecutor)
+                .exceptionally(AuthController::busyOrRethrow);
+    }
 
-        return ResponseEntity.ok("User registered successfully!");
+    /**
+     * Turns a full hashing or account queue into a fast 503; any other failure (e.g. bad credentials) propagates as before.
+     */
+    private static ResponseEntity<?> busyOrRethrow(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof RejectedExecutionException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body("Server is busy, please try again.");
+        }
+        if (cause instanceof RuntimeException runtime)
+            throw runtime;
+        throw new CompletionException(cause);
     }
 }
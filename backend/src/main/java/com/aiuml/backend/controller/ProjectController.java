@@ -1,14 +1,40 @@
 package com.aiuml.backend.controller;
 
+import com.aiuml.backend.dto.BatchAnalysisRequest;
+import com.aiuml.backend.dto.DiagramHistory;
+import com.aiuml.backend.dto.ParsedDocument;
 import com.aiuml.backend.model.Project;
-import com.aiuml.backend.service.AiAnalysisService;
+import com.aiuml.backend.repository.ProjectRepository;
+import com.aiuml.backend.security.UserDetailsImpl;
+import com.aiuml.backend.service.AnalysisDeadline;
+import com.aiuml.backend.service.AnalysisJobService;
+import com.aiuml.backend.service.BatchAnalysisService;
+import com.aiuml.backend.service.DeadlineExceededException;
+import com.aiuml.backend.service.DiagramHistoryService;
 import com.aiuml.backend.service.DocumentParsingService;
+import com.aiuml.backend.service.ProjectAnalysisService;
 import com.aiuml.backend.service.ProjectService;
+import com.aiuml.backend.service.StaleVersionException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/projects")
@@ -17,8 +43,11 @@ import java.util.Map;
 @Slf4j
 public class ProjectController {
     private final ProjectService projectService;
-    private final AiAnalysisService aiService;
+    private final ProjectAnalysisService analysisService;
+    private final AnalysisJobService analysisJobService;
+    private final BatchAnalysisService batchAnalysisService;
     private final DocumentParsingService parsingService;
+    private final DiagramHistoryService historyService;
 
     @PostMapping
     public Project createProject(@RequestBody Project project) {
@@ -27,34 +56,117 @@ public class ProjectController {
     }
 
     @GetMapping("/user/{userId}")
-    public java.util.List<Project> getUserProjects(@PathVariable Long userId) {
+    public List<Project> getUserProjects(@PathVariable Long userId) {
         return projectService.getUserProjects(userId);
     }
 
+    @GetMapping("/search")
+    public Page<ProjectRepository.SearchHit> searchProjects(@AuthenticationPrincipal UserDetailsImpl user,
+            @RequestParam("q") String query,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+        return projectService.searchProjects(user.getId(), query, page, size);
+    }
+
     @GetMapping("/{id}")
-    public Project getProject(@PathVariable Long id) {
-        return projectService.getProject(id);
+    public ResponseEntity<Project> getProject(@PathVariable Long id, WebRequest request) {
+        // Version lookup is a single-column query; the full entity is only loaded when the client is stale.
+        // no-cache replaces Spring Security's no-store, so clients keep the body and revalidate with If-None-Match.
+        String eTag = toETag(projectService.getProjectVersion(id));
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(CacheControl.noCache()).build();
+        }
+        Project project = projectService.getProject(id);
+        return ResponseEntity.ok().eTag(toETag(project.getVersion())).cacheControl(CacheControl.noCache()).body(project);
     }
 
+    /**
+     * Runs the analysis off the request thread. The budget comes from {@code X-Request-Timeout-Ms} when the
+     * client sends one; when it runs out, or the container reports the client gone, outstanding model calls
+     * are aborted.
+     */
     @PostMapping("/{id}/analyze")
-    public Map<String, Object> analyzeProject(@PathVariable Long id, @RequestBody Map<String, String> payload) {
+    public DeferredResult<ResponseEntity<Map<String, Object>>> analyzeProject(@PathVariable Long id,
+            @RequestBody Map<String, String> payload,
+            @RequestHeader(value = "X-Request-Timeout-Ms", required = false) Long timeoutMs) {
         String requirements = payload.get("requirements");
         String type = payload.getOrDefault("type", "CLASS");
-        log.info("[API: POST] Analyze Project ID: {}. Type: {}. Requirements Length: {}", id, type,
-                requirements != null ? requirements.length() : 0);
+        // Incremental by default; "incremental": false forces a full regeneration
+        boolean incremental = !"false".equalsIgnoreCase(payload.get("incremental"));
+        log.info("[API: POST] Analyze Project ID: {}. Type: {}. Requirements Length: {}. Incremental: {}. Budget: {}", id, type,
+                requirements != null ? requirements.length() : 0, incremental, timeoutMs);
 
-        String plantUml = aiService.generatePlantUml(requirements, type);
-        Map<String, String> patterns = aiService.detectPatterns(requirements);
+        AnalysisDeadline deadline = analysisService.newDeadline(timeoutMs);
+        DeferredResult<ResponseEntity<Map<String, Object>>> result = new DeferredResult<>(deadline.remaining().toMillis() + 1000);
+        result.onTimeout(() -> {
+            analysisService.cancel(deadline, ProjectAnalysisService.REASON_DEADLINE);
+            result.setResult(deadlineExceeded());
+        });
+        result.onError(e -> analysisService.cancel(deadline, ProjectAnalysisService.REASON_CLIENT_DISCONNECT));
 
-        return Map.of(
-                "plantUml", plantUml,
-                "patterns", patterns);
+        try {
+            // With the cluster-wide queue enabled, whichever node claims the job runs it
+            CompletableFuture<Map<String, Object>> analysis = analysisJobService.isEnabled()
+                    ? analysisJobService.submit(id, requirements, type, incremental, deadline)
+                    : analysisService.submit(id, requirements, type, incremental, deadline);
+            analysis.whenComplete((response, error) -> {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause == null)
+                    result.setResult(ResponseEntity.ok(response));
+                else if (cause instanceof DeadlineExceededException)
+                    result.setResult(deadlineExceeded());
+                else
+                    result.setErrorResult(cause);
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("[API: POST] Analysis pool saturated. Rejecting project {}.", id);
+            result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("message", "Too many analyses in progress. Please try again shortly.")));
+        }
+        return result;
+    }
+
+    /**
+     * Analyzes several projects and streams one {@code result} event per item as it finishes, then a
+     * {@code done} event. Teachers and admins may include projects they do not own.
+     */
+    @PostMapping(value = "/analyze/batch", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter analyzeBatch(@RequestBody BatchAnalysisRequest request, @AuthenticationPrincipal UserDetailsImpl user) {
+        log.info("[API: POST] Batch analysis of {} item(s) by user {}", request.getItems() != null ? request.getItems().size() : 0,
+                user.getId());
+        boolean privileged = user.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_TEACHER") || a.getAuthority().equals("ROLE_ADMIN"));
+        return batchAnalysisService.start(request, user.getId(), privileged);
+    }
+
+    private static ResponseEntity<Map<String, Object>> deadlineExceeded() {
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                .body(Map.of("message", "Analysis did not finish within its time budget."));
     }
 
     @PutMapping("/{id}")
-    public Project updateProject(@PathVariable Long id, @RequestBody Project project) {
-        log.info("[API: PUT] Update Project: {}", id);
-        return projectService.updateProject(id, project);
+    public ResponseEntity<Project> updateProject(@PathVariable Long id, @RequestBody Project project,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) {
+        log.info("[API: PUT] Update Project: {}. If-Match: {}", id, ifMatch);
+        Project updated = projectService.updateProject(id, project, fromETag(ifMatch));
+        return ResponseEntity.ok().eTag(toETag(updated.getVersion())).body(updated);
+    }
+
+    // Only a PUT with If-Match gets here; other writes retry their version bump instead
+    @ExceptionHandler(StaleVersionException.class)
+    public ResponseEntity<Map<String, String>> handleStaleVersion(StaleVersionException e) {
+        log.warn("[API: PUT] Rejected stale update: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .body(Map.of("message", "Project was modified by someone else. Reload and try again."));
+    }
+
+    // A write still lost the race after its retries; nothing was conditional, so this is not a 412
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, String>> handleVersionConflict(ObjectOptimisticLockingFailureException e) {
+        log.warn("[API] Project kept changing concurrently: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("message", "Project is being updated right now. Please try again."));
     }
 
     @DeleteMapping("/{id}")
@@ -77,4 +189,60 @@ public class ProjectController {
         String content = parsingService.parseDocument(file);
         return Map.of("content", content);
     }
+
+    @PostMapping("/{id}/upload/batch")
+    public Map<String, Object> uploadRequirementsBatch(@PathVariable Long id, @RequestParam("files") List<MultipartFile> files) {
+        log.info("[API: POST] Uploading {} file(s) for project {}", files.size(), id);
+        long start = System.currentTimeMillis();
+        List<ParsedDocument> documents = parsingService.parseDocuments(files);
+        return Map.of(
+                "content", parsingService.concatenate(documents),
+                "files", documents,
+                "durationMs", System.currentTimeMillis() - start);
+    }
+
+    @GetMapping("/{id}/diagrams/{type}/versions")
+    public DiagramHistory getDiagramHistory(@PathVariable Long id, @PathVariable String type) {
+        log.info("[API: GET] Diagram history of project {} ({})", id, type);
+        return historyService.history(id, type);
+    }
+
+    @GetMapping("/{id}/diagrams/{type}/versions/{version}")
+    public Map<String, Object> getDiagramVersion(@PathVariable Long id, @PathVariable String type, @PathVariable int version) {
+        return Map.of("version", version, "plantUml", historyService.reconstruct(id, type, version));
+    }
+
+    @GetMapping("/{id}/diagrams/{type}/versions/compare")
+    public Map<String, Object> compareDiagramVersions(@PathVariable Long id, @PathVariable String type,
+            @RequestParam("from") int from, @RequestParam("to") int to) {
+        log.info("[API: GET] Compare diagram versions {} and {} of project {} ({})", from, to, id, type);
+        return Map.of("from", from, "to", to, "diff", historyService.compare(id, type, from, to));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+    }
+
+    static String toETag(Long version) {
+        return "\"" + (version != null ? version : 0L) + "\"";
+    }
+
+    /**
+     * Parses an If-Match value produced by {@link #toETag}. Absent, wildcard or unparseable values
+     * disable the version check so older clients keep their last-write-wins behaviour.
+     */
+    static Long fromETag(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || "*".equals(ifMatch.trim()))
+            return null;
+        String value = ifMatch.trim();
+        if (value.startsWith("W/"))
+            value = value.substring(2);
+        value = value.replace("\"", "");
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,40 @@
+package com.aiuml.backend.controller;
+
+import com.aiuml.backend.model.Project;
+import com.aiuml.backend.security.UserDetailsImpl;
+import com.aiuml.backend.service.TemplateCatalogService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/templates")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+@Slf4j
+public class TemplateController {
+    private final TemplateCatalogService templateCatalogService;
+
+    @GetMapping
+    public List<Map<String, Object>> getTemplates() {
+        return templateCatalogService.list();
+    }
+
+    @PostMapping("/{templateId}/projects")
+    public Map<String, Object> createProjectFromTemplate(@PathVariable String templateId,
+            @AuthenticationPrincipal UserDetailsImpl user) {
+        log.info("[API: POST] Create Project from template {} for user {}", templateId, user.getId());
+        Project project = templateCatalogService.createProject(templateId, user.getId());
+        return Map.of("id", project.getId(), "name", project.getName());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleUnknownTemplate(IllegalArgumentException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", e.getMessage()));
+    }
+}
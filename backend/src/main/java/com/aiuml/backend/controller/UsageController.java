@@ -0,0 +1,40 @@
+package com.aiuml.backend.controller;
+
+import com.aiuml.backend.dto.ModelUsage;
+import com.aiuml.backend.security.UserDetailsImpl;
+import com.aiuml.backend.service.UsageAggregator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/usage")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+@Slf4j
+public class UsageController {
+    private final UsageAggregator usageAggregator;
+
+    @GetMapping("/me")
+    public Map<String, Object> getMyUsage(@AuthenticationPrincipal UserDetailsImpl user) {
+        return usageOf(user.getId());
+    }
+
+    @GetMapping("/users/{userId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public Map<String, Object> getUserUsage(@PathVariable Long userId) {
+        log.info("[API: GET] Usage of user {}", userId);
+        return usageOf(userId);
+    }
+
+    private Map<String, Object> usageOf(Long userId) {
+        List<ModelUsage> models = usageAggregator.usageOf(userId);
+        ModelUsage total = new ModelUsage("total", 0, 0, 0, 0, 0);
+        models.forEach(total::add);
+        return Map.of("userId", userId, "models", models, "total", total);
+    }
+}
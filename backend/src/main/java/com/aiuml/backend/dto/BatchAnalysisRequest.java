@@ -0,0 +1,16 @@
+package com.aiuml.backend.dto;
+
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class BatchAnalysisRequest {
+    private List<Item> items;
+    private boolean incremental = true;
+
+    @Data
+    public static class Item {
+        private Long projectId;
+        private String type = "CLASS";
+    }
+}
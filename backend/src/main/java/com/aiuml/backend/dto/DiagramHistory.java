@@ -0,0 +1,14 @@
+package com.aiuml.backend.dto;
+
+import com.aiuml.backend.repository.DiagramVersionRepository;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class DiagramHistory {
+    private List<DiagramVersionRepository.VersionView> versions; // newest first
+    private long storedBytes;
+    private long fullCopyBytes; // what storing every version in full would take
+}
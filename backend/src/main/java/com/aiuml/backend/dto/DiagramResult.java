@@ -0,0 +1,12 @@
+package com.aiuml.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class DiagramResult {
+    private String code;
+    private String domainModel; // null when generation failed, nothing to persist
+    private boolean incremental;
+}
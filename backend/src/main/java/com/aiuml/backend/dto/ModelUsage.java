@@ -0,0 +1,23 @@
+package com.aiuml.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ModelUsage {
+    private String model; // "*" for the analysis count, or "total" when summed over models
+    private long analyses;
+    private long calls;
+    private long failedCalls;
+    private long promptTokens;
+    private long outputTokens;
+
+    public void add(ModelUsage other) {
+        analyses += other.analyses;
+        calls += other.calls;
+        failedCalls += other.failedCalls;
+        promptTokens += other.promptTokens;
+        outputTokens += other.outputTokens;
+    }
+}
@@ -0,0 +1,13 @@
+package com.aiuml.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ParsedDocument {
+    private String fileName;
+    private String content; // null when parsing failed
+    private String error;
+    private long durationMs;
+}
@@ -0,0 +1,24 @@
+package com.aiuml.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.Map;
+
+/**
+ * Entry of project-templates.json. The diagram fields and patterns may be filled in ahead of time;
+ * otherwise they are generated once at startup.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProjectTemplate {
+    private String id;
+    private String name;
+    private String description;
+    private String type;
+    private String requirements;
+    private String plantUml;
+    private String domainModel;
+    private Map<String, String> patterns;
+}
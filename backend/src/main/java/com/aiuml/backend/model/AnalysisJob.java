@@ -0,0 +1,55 @@
+package com.aiuml.backend.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.Instant;
+
+/**
+ * Durable unit of analysis work, claimed by any backend node through a time-limited lease.
+ */
+@Entity
+@Table(name = "analysis_jobs", indexes = @Index(name = "idx_analysis_jobs_status", columnList = "status, id"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AnalysisJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long projectId;
+
+    private String type;
+
+    @Column(columnDefinition = "TEXT")
+    private String requirements;
+
+    private boolean incremental;
+
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    private int attempts;
+
+    private String leaseOwner;
+
+    private Instant leaseExpiresAt;
+
+    private Instant deadlineAt;
+
+    @Column(columnDefinition = "TEXT")
+    private String result; // JSON response of the analysis
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+
+    private Instant createdAt;
+
+    private Instant finishedAt;
+
+    public enum Status {
+        QUEUED, RUNNING, DONE, FAILED, CANCELLED
+    }
+}
@@ -2,9 +2,13 @@ package com.aiuml.backend.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
 @Table(name = "diagrams")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "diagrams")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -20,6 +24,19 @@ public class Diagram {
     @Column(columnDefinition = "TEXT")
     private String plantUmlCode;
 
+    // Inputs that produced this diagram, kept so later analyses can send only the changed paragraphs
+    @Column(columnDefinition = "TEXT")
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private String sourceRequirements;
+
+    @Column(columnDefinition = "TEXT")
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private String domainModel;
+
+    // SimHash of sourceRequirements, backing the in-memory near-duplicate index
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private Long requirementsFingerprint;
+
     @ManyToOne
     @JoinColumn(name = "project_id")
     @com.fasterxml.jackson.annotation.JsonIgnore
@@ -0,0 +1,52 @@
+package com.aiuml.backend.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+import java.time.Instant;
+
+/**
+ * One entry of a diagram's history. Snapshots hold the full PlantUML text; deltas hold a line edit script
+ * against the previous version. Payloads may be deflate-compressed.
+ */
+@Entity
+@Table(name = "diagram_versions", uniqueConstraints = @UniqueConstraint(name = "uk_diagram_versions_number",
+        columnNames = { "project_id", "type", "version_number" }))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DiagramVersion {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "project_id")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private Project project;
+
+    private String type;
+
+    private int versionNumber;
+
+    @Enumerated(EnumType.STRING)
+    private Kind kind;
+
+    private byte[] payload;
+
+    private boolean compressed;
+
+    private int storedBytes; // payload size
+
+    private int fullBytes; // UTF-8 size of the reconstructed text, i.e. what a full copy would cost
+
+    private Instant createdAt;
+
+    public enum Kind {
+        SNAPSHOT, DELTA
+    }
+}
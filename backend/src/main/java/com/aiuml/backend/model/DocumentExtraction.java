@@ -0,0 +1,32 @@
+package com.aiuml.backend.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.Instant;
+
+/**
+ * Text extracted from an uploaded document, keyed by the SHA-256 of the uploaded bytes.
+ */
+@Entity
+@Table(name = "document_extractions", indexes = @Index(name = "idx_document_extractions_accessed", columnList = "lastAccessedAt"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DocumentExtraction {
+    @Id
+    @Column(length = 64)
+    private String contentHash;
+
+    @Column(columnDefinition = "TEXT")
+    private String content;
+
+    private long sizeBytes;
+
+    private long hitCount;
+
+    private Instant createdAt;
+
+    private Instant lastAccessedAt;
+}
@@ -2,9 +2,13 @@ package com.aiuml.backend.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
 @Table(name = "pattern_suggestions")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "patternSuggestions")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -20,6 +24,12 @@ public class PatternSuggestion {
     @Column(columnDefinition = "TEXT")
     private String explanation;
 
+    private String source; // LOCAL (keyword detector), LLM (background refinement) or TEMPLATE (catalog)
+
+    // Hash of the requirements the suggestion was derived from, so a late refinement can tell it is stale
+    @com.fasterxml.jackson.annotation.JsonIgnore
+    private Integer requirementsHash;
+
     @ManyToOne
     @JoinColumn(name = "project_id")
     @com.fasterxml.jackson.annotation.JsonIgnore
@@ -0,0 +1,41 @@
+package com.aiuml.backend.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.Instant;
+
+/**
+ * Cumulative model usage of one user with one model, maintained by batched upserts.
+ * The row with model {@code "*"} counts analyses, which are not tied to a single model.
+ */
+@Entity
+@Table(name = "usage_totals", uniqueConstraints = @UniqueConstraint(name = "uk_usage_totals_user_model",
+        columnNames = { "user_id", "model" }))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UsageTotal {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(nullable = false)
+    private String model;
+
+    private long analyses;
+
+    private long calls;
+
+    private long failedCalls;
+
+    private long promptTokens;
+
+    private long outputTokens;
+
+    private Instant updatedAt;
+}
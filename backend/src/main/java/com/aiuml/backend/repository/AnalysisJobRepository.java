@@ -0,0 +1,50 @@
+package com.aiuml.backend.repository;
+
+import com.aiuml.backend.model.AnalysisJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.Instant;
+import java.util.Collection;
+
+public interface AnalysisJobRepository extends JpaRepository<AnalysisJob, Long> {
+    long countByStatus(AnalysisJob.Status status);
+
+    // Fenced by lease owner: a worker whose lease was reclaimed cannot overwrite the new owner's outcome
+    @Transactional
+    @Modifying
+    @Query("update AnalysisJob j set j.status = :status, j.result = :result, j.error = :error, j.finishedAt = :now, "
+            + "j.leaseOwner = null where j.id = :id and j.leaseOwner = :owner and j.status = :running")
+    int finish(@Param("id") Long id, @Param("owner") String owner, @Param("status") AnalysisJob.Status status,
+            @Param("result") String result, @Param("error") String error, @Param("now") Instant now,
+            @Param("running") AnalysisJob.Status running);
+
+    @Transactional
+    @Modifying
+    @Query("update AnalysisJob j set j.status = :queued, j.leaseOwner = null, j.error = :error "
+            + "where j.id = :id and j.leaseOwner = :owner and j.status = :running")
+    int requeue(@Param("id") Long id, @Param("owner") String owner, @Param("error") String error,
+            @Param("queued") AnalysisJob.Status queued, @Param("running") AnalysisJob.Status running);
+
+    // Hands the job back without spending an attempt, e.g. when its node shuts down mid-analysis
+    @Transactional
+    @Modifying
+    @Query("update AnalysisJob j set j.status = :queued, j.leaseOwner = null, j.attempts = j.attempts - 1 "
+            + "where j.id = :id and j.leaseOwner = :owner and j.status = :running")
+    int release(@Param("id") Long id, @Param("owner") String owner, @Param("queued") AnalysisJob.Status queued,
+            @Param("running") AnalysisJob.Status running);
+
+    @Transactional
+    @Modifying
+    @Query("update AnalysisJob j set j.status = :cancelled, j.error = :reason, j.finishedAt = :now "
+            + "where j.id = :id and j.status in :active")
+    int cancel(@Param("id") Long id, @Param("reason") String reason, @Param("now") Instant now,
+            @Param("cancelled") AnalysisJob.Status cancelled, @Param("active") Collection<AnalysisJob.Status> active);
+
+    @Transactional
+    @Modifying
+    @Query("delete from AnalysisJob j where j.status in :finished and j.finishedAt < :cutoff")
+    int purge(@Param("finished") Collection<AnalysisJob.Status> finished, @Param("cutoff") Instant cutoff);
+}
@@ -2,8 +2,26 @@ package com.aiuml.backend.repository;
 
 import com.aiuml.backend.model.Diagram;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import java.util.List;
+import java.util.Optional;
 
 public interface DiagramRepository extends JpaRepository<Diagram, Long> {
     List<Diagram> findByProjectId(Long projectId);
+
+    Optional<Diagram> findFirstByProjectIdAndTypeOrderByIdDesc(Long projectId, String type);
+
+    @Query("select d.id as id, d.project.id as projectId, d.type as type, d.requirementsFingerprint as fingerprint "
+            + "from Diagram d where d.requirementsFingerprint is not null")
+    List<FingerprintView> findAllFingerprints();
+
+    interface FingerprintView {
+        Long getId();
+
+        Long getProjectId();
+
+        String getType();
+
+        Long getFingerprint();
+    }
 }
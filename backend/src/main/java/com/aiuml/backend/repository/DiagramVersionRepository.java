@@ -0,0 +1,34 @@
+package com.aiuml.backend.repository;
+
+import com.aiuml.backend.model.DiagramVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface DiagramVersionRepository extends JpaRepository<DiagramVersion, Long> {
+    // Metadata only, so listing a long history never loads payloads
+    List<VersionView> findByProjectIdAndTypeOrderByVersionNumberDesc(Long projectId, String type);
+
+    Optional<VersionView> findFirstByProjectIdAndTypeOrderByVersionNumberDesc(Long projectId, String type);
+
+    Optional<VersionView> findFirstByProjectIdAndTypeAndKindAndVersionNumberLessThanEqualOrderByVersionNumberDesc(
+            Long projectId, String type, DiagramVersion.Kind kind, int versionNumber);
+
+    List<DiagramVersion> findByProjectIdAndTypeAndVersionNumberBetweenOrderByVersionNumber(Long projectId, String type,
+            int from, int to);
+
+    interface VersionView {
+        int getVersionNumber();
+
+        DiagramVersion.Kind getKind();
+
+        boolean isCompressed();
+
+        int getStoredBytes();
+
+        int getFullBytes();
+
+        Instant getCreatedAt();
+    }
+}
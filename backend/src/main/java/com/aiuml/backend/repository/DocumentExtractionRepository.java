@@ -0,0 +1,23 @@
+package com.aiuml.backend.repository;
+
+import com.aiuml.backend.model.DocumentExtraction;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.Instant;
+import java.util.List;
+
+public interface DocumentExtractionRepository extends JpaRepository<DocumentExtraction, String> {
+
+    @Transactional
+    @Modifying
+    @Query("update DocumentExtraction d set d.lastAccessedAt = :now, d.hitCount = d.hitCount + 1 where d.contentHash = :hash")
+    int touch(@Param("hash") String hash, @Param("now") Instant now);
+
+    // JPQL rather than native SQL: a native delete would invalidate every second-level cache region
+    @Query("select d.contentHash from DocumentExtraction d order by d.lastAccessedAt asc")
+    List<String> findLeastRecentlyUsed(Pageable page);
+}
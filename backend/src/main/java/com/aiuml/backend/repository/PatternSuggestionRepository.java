@@ -6,4 +6,6 @@ import java.util.List;
 
 public interface PatternSuggestionRepository extends JpaRepository<PatternSuggestion, Long> {
     List<PatternSuggestion> findByProjectId(Long projectId);
+
+    void deleteByProjectId(Long projectId);
 }
@@ -1,9 +1,64 @@
 package com.aiuml.backend.repository;
 
 import com.aiuml.backend.model.Project;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import java.util.List;
+import java.util.Optional;
 
 public interface ProjectRepository extends JpaRepository<Project, Long> {
+    // Query-cache results hold only ids; the projects themselves come from the entity cache
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     List<Project> findByUserId(Long userId);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
+    @Query("select p.version from Project p where p.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    // Used when child rows change, so the project's ETag moves with its diagrams
+    @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+    @Query("select p from Project p where p.id = :id")
+    Optional<Project> findForUpdateById(@Param("id") Long id);
+
+    // Row lock for writers that number child rows (diagram versions); also bumps the version right away
+    @Lock(LockModeType.PESSIMISTIC_FORCE_INCREMENT)
+    @Query("select p from Project p where p.id = :id")
+    Optional<Project> lockById(@Param("id") Long id);
+
+    /**
+     * Ranked full-text matches for one user. The inner query ranks and pages using the GIN index;
+     * highlighting, the expensive part, only runs on the rows of the requested page.
+     */
+    @Query(value = "SELECT r.id AS id, r.name AS name, r.description AS description, r.rank AS rank, "
+            + "ts_headline('english', coalesce(r.description, '') || ' ' || left(coalesce(r.requirements, ''), 20000), r.q, "
+            + "'StartSel=<mark>, StopSel=</mark>, MaxFragments=2, MaxWords=25, MinWords=8') AS snippet "
+            + "FROM (SELECT p.id, p.name, p.description, p.requirements, q, "
+            + "CAST(ts_rank_cd(p.search_vector, q) AS double precision) AS rank "
+            + "FROM projects p, websearch_to_tsquery('english', :query) q "
+            + "WHERE p.user_id = :userId AND p.search_vector @@ q "
+            + "ORDER BY rank DESC, p.id DESC LIMIT :limit OFFSET :offset) r "
+            + "ORDER BY r.rank DESC, r.id DESC", nativeQuery = true)
+    List<SearchHit> search(@Param("userId") Long userId, @Param("query") String query,
+            @Param("limit") int limit, @Param("offset") long offset);
+
+    @Query(value = "SELECT count(*) FROM projects p WHERE p.user_id = :userId "
+            + "AND p.search_vector @@ websearch_to_tsquery('english', :query)", nativeQuery = true)
+    long countSearch(@Param("userId") Long userId, @Param("query") String query);
+
+    interface SearchHit {
+        Long getId();
+
+        String getName();
+
+        String getDescription();
+
+        Double getRank();
+
+        String getSnippet();
+    }
 }
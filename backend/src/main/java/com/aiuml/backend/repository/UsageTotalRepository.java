@@ -0,0 +1,9 @@
+package com.aiuml.backend.repository;
+
+import com.aiuml.backend.model.UsageTotal;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.List;
+
+public interface UsageTotalRepository extends JpaRepository<UsageTotal, Long> {
+    List<UsageTotal> findByUserIdOrderByModel(Long userId);
+}
@@ -1,11 +1,22 @@
 package com.aiuml.backend.service;
 
+import com.aiuml.backend.dto.DiagramResult;
+import com.aiuml.backend.model.Diagram;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.http.*;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -16,8 +27,26 @@ public class AiAnalysisService {
     @Value("${spring.ai.openai.api-key:UNSET}")
     private String apiKey;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    // Below this, starting another model attempt cannot finish in time and only wastes quota
+    private static final Duration MIN_ATTEMPT_BUDGET = Duration.ofMillis(500);
+
+    // Mermaid keywords opening a block closed by a bare 'end' line
+    private static final Set<String> BLOCK_OPENERS = Set.of("loop", "alt", "opt", "par", "critical", "break", "rect", "subgraph");
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Counter skippedAttempts;
+    private final Counter abortedCalls;
+    private final UsageAggregator usageAggregator;
+
+    @Value("${aiuml.analysis.attempt-timeout-ms:30000}")
+    private long attemptTimeoutMs;
+
+    public AiAnalysisService(MeterRegistry meterRegistry, UsageAggregator usageAggregator) {
+        this.usageAggregator = usageAggregator;
+        this.skippedAttempts = meterRegistry.counter("aiuml.analysis.model.attempts.skipped");
+        this.abortedCalls = meterRegistry.counter("aiuml.analysis.model.calls.aborted");
+    }
 
     private final String[] VERSION_PRIORITY = { "v1beta", "v1" };
 
@@ -42,7 +71,43 @@ public class AiAnalysisService {
         }
     }
 
+    @Value("${aiuml.analysis.incremental-max-change-ratio:0.4}")
+    private double incrementalMaxChangeRatio;
+
     public String generatePlantUml(String requirements, String type) {
+        return generateDiagram(requirements, type, null).getCode();
+    }
+
+    /**
+     * Generates a diagram, reusing {@code previous} when possible: unchanged requirements return the stored
+     * diagram without any model call, and small edits send only the changed paragraphs together with the
+     * stored domain model and diagram. Large rewrites, or patches the model cannot express, fall back to
+     * the full two-stage pipeline.
+     */
+    public DiagramResult generateDiagram(String requirements, String type, Diagram previous) {
+        if (previous != null && previous.getSourceRequirements() != null && previous.getDomainModel() != null
+                && previous.getPlantUmlCode() != null) {
+            RequirementsDiff diff = RequirementsDiff.between(previous.getSourceRequirements(), requirements);
+            if (diff.isEmpty()) {
+                log.info("[STAGE: INCREMENTAL] Requirements unchanged. Reusing stored diagram.");
+                return new DiagramResult(previous.getPlantUmlCode(), previous.getDomainModel(), true);
+            }
+            if (diff.getChangedRatio() <= incrementalMaxChangeRatio) {
+                log.info("[STAGE: INCREMENTAL] {} paragraph(s) added, {} removed ({}% changed).",
+                        diff.getAdded().size(), diff.getRemoved().size(), Math.round(diff.getChangedRatio() * 100));
+                DiagramResult patched = patchDiagram(previous, diff, type);
+                if (patched != null)
+                    return patched;
+                log.warn("[STAGE: INCREMENTAL] Patch unusable. Falling back to full regeneration.");
+            } else {
+                log.info("[STAGE: INCREMENTAL] {}% changed. Running full regeneration.",
+                        Math.round(diff.getChangedRatio() * 100));
+            }
+        }
+        return generateFull(requirements, type);
+    }
+
+    private DiagramResult generateFull(String requirements, String type) {
         log.info("[STAGE: START] Architecture Analysis. Type: {}", type);
         validateEnvironment();
 
@@ -55,17 +120,162 @@ public class AiAnalysisService {
 
             String domainModel = extractDomainModel(requirements, contextPrompt);
             if (domainModel.startsWith("ERROR:"))
-                return "graph TD\n  Error[\"AI Error: " + domainModel + "\"]";
+                return failed("AI Error: " + domainModel);
 
             String mermaidCode = generateMermaidFromModel(domainModel, type);
             if (mermaidCode.startsWith("ERROR:"))
-                return "graph TD\n  Error[\"AI Error: " + mermaidCode + "\"]";
+                return failed("AI Error: " + mermaidCode);
 
-            return sanitizeMermaid(mermaidCode);
+            return new DiagramResult(sanitizeMermaid(mermaidCode), domainModel, false);
+        } catch (DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
             log.error("[STAGE: ERROR] AI Analysis failed: {}", e.getMessage());
-            return "graph TD\n  Error[\"AI SERVICE ERROR: " + e.getMessage().replace("\"", "'") + "\"]";
+            return failed("AI SERVICE ERROR: " + e.getMessage().replace("\"", "'"));
+        }
+    }
+
+    private DiagramResult failed(String message) {
+        return new DiagramResult("graph TD\n  Error[\"" + message + "\"]", null, false);
+    }
+
+    private DiagramResult patchDiagram(Diagram previous, RequirementsDiff diff, String type) {
+        validateEnvironment();
+        StringBuilder prompt = new StringBuilder("Act as a Senior Architect. A domain model and a Mermaid.js ")
+                .append(type).append(" diagram were generated from a requirements document, which has since been edited.");
+        prompt.append("\nREMOVED PARAGRAPHS:");
+        for (String p : diff.getRemoved())
+            prompt.append("\n- ").append(p);
+        prompt.append("\nADDED PARAGRAPHS:");
+        for (String p : diff.getAdded())
+            prompt.append("\n- ").append(p);
+        prompt.append("\nCURRENT DOMAIN MODEL:\n").append(previous.getDomainModel())
+                .append("\nCURRENT DIAGRAM:\n").append(previous.getPlantUmlCode())
+                .append("\nChange ONLY what the edited paragraphs require. Keep every other line exactly as it is.")
+                .append("\nOutput a line 'MODEL PATCH' followed by hunks, then a line 'DIAGRAM PATCH' followed by hunks.")
+                .append(" Each hunk starts with '@@ ' and an existing line copied verbatim; the edits under it apply right")
+                .append(" after that line: '- ' plus a line copied verbatim removes it, '+ ' plus a line inserts it there.")
+                .append(" Anchor additions inside a block (e.g. a class body) on a line of that block. No markdown. No other text.");
+
+        String response = callGemini(prompt.toString());
+        if (response.startsWith("ERROR:"))
+            return null;
+
+        List<String> modelPatch = new ArrayList<>();
+        List<String> diagramPatch = new ArrayList<>();
+        List<String> current = null;
+        boolean sawDiagramPatch = false;
+        for (String line : response.split("\\n")) {
+            String t = line.trim();
+            String header = t.replaceAll("[#*:`]", "").trim().toUpperCase();
+            if (header.equals("MODEL PATCH"))
+                current = modelPatch;
+            else if (header.equals("DIAGRAM PATCH")) {
+                current = diagramPatch;
+                sawDiagramPatch = true;
+            }
+            else if (current != null && (t.startsWith("@@") || t.startsWith("+") || t.startsWith("-")))
+                current.add(t);
         }
+        if (!sawDiagramPatch)
+            return null;
+
+        String model = applyPatch(previous.getDomainModel(), modelPatch, false);
+        String diagram = applyPatch(previous.getPlantUmlCode(), diagramPatch, true);
+        if (model == null || diagram == null || !isWellFormed(previous.getPlantUmlCode(), diagram))
+            return null;
+        log.info("[STAGE: INCREMENTAL] Patched diagram with {} edit line(s).", diagramPatch.size());
+        return new DiagramResult(sanitizeMermaid(diagram), model, true);
+    }
+
+    /**
+     * Applies anchored hunks: {@code @@ line} moves the cursor after the first occurrence of that line, a
+     * removal deletes the next matching line from the anchor on, and an addition is inserted at the cursor
+     * with the indentation of its surroundings. Every other line stays in place so the rendered layout is
+     * stable. Returns null when an anchor or removed line cannot be found, or, for a diagram, when an
+     * addition has no anchor to place it.
+     */
+    static String applyPatch(String base, List<String> patch, boolean diagram) {
+        List<String> lines = new ArrayList<>(Arrays.asList(base.split("\\n")));
+        int cursor = -1; // no anchor yet
+        String indent = "";
+        for (String edit : patch) {
+            String text = edit.substring(edit.startsWith("@@") ? 2 : 1).trim();
+            if (edit.startsWith("@@")) {
+                int anchor = indexOf(lines, text, Math.max(cursor, 0));
+                if (anchor < 0)
+                    anchor = indexOf(lines, text, 0);
+                if (anchor < 0)
+                    return null;
+                cursor = anchor + 1;
+                String anchorLine = lines.get(anchor);
+                indent = leadingWhitespace(anchorLine) + (anchorLine.trim().endsWith("{") ? "  " : "");
+            } else if (edit.startsWith("-")) {
+                // From the anchor line itself, so a hunk may anchor on the line it removes
+                int removed = indexOf(lines, text, Math.max(cursor - 1, 0));
+                if (removed < 0 || (diagram && removed == 0))
+                    return null; // never drop the diagram header
+                indent = leadingWhitespace(lines.remove(removed));
+                cursor = removed;
+            } else if (!text.isEmpty()) {
+                if (cursor < 0) {
+                    if (diagram)
+                        return null;
+                    cursor = lines.size();
+                }
+                lines.add(cursor++, indent + text);
+            }
+        }
+        return String.join("\n", lines);
+    }
+
+    private static int indexOf(List<String> lines, String trimmed, int from) {
+        for (int i = from; i < lines.size(); i++)
+            if (lines.get(i).trim().equals(trimmed))
+                return i;
+        return -1;
+    }
+
+    private static String leadingWhitespace(String line) {
+        int i = 0;
+        while (i < line.length() && Character.isWhitespace(line.charAt(i)))
+            i++;
+        return line.substring(0, i);
+    }
+
+    /**
+     * Rejects a patched diagram whose header changed or whose blocks no longer close: braces must balance,
+     * and the count of {@code end} lines (sequence blocks, subgraphs) must not change relative to block
+     * openers.
+     */
+    static boolean isWellFormed(String original, String patched) {
+        String[] before = original.split("\\n");
+        String[] after = patched.split("\\n");
+        if (after.length == 0 || !after[0].trim().equals(before[0].trim()))
+            return false;
+        int depth = 0;
+        for (String line : after) {
+            for (char c : line.toCharArray()) {
+                if (c == '{')
+                    depth++;
+                else if (c == '}' && --depth < 0)
+                    return false;
+            }
+        }
+        return depth == 0 && blockBalance(before) == blockBalance(after);
+    }
+
+    private static int blockBalance(String[] lines) {
+        int balance = 0;
+        for (String line : lines) {
+            String t = line.trim();
+            String keyword = t.split("\\s+", 2)[0];
+            if (t.equals("end"))
+                balance--;
+            else if (BLOCK_OPENERS.contains(keyword))
+                balance++;
+        }
+        return balance;
     }
 
     private String extractDomainModel(String requirements, String contextPrompt) {
@@ -96,40 +306,84 @@ public class AiAnalysisService {
         return callGemini(prompt);
     }
 
+    /**
+     * Walks the model fallback chain. Each attempt gets the smaller of the per-attempt cap and the time left
+     * on the current {@link AnalysisDeadline}; once the deadline is gone or cancelled the remaining attempts
+     * are skipped and the in-flight call is aborted.
+     */
     private String callGemini(String promptText) {
+        AnalysisDeadline deadline = AnalysisDeadline.current();
+        int totalAttempts = VERSION_PRIORITY.length * MODEL_PRIORITY.length;
+        int attempt = 0;
         for (String version : VERSION_PRIORITY) {
             for (String modelName : MODEL_PRIORITY) {
+                try {
+                    deadline.check(MIN_ATTEMPT_BUDGET);
+                } catch (DeadlineExceededException e) {
+                    skippedAttempts.increment(totalAttempts - attempt);
+                    log.warn("[DEADLINE] {}. Skipping {} remaining model attempt(s).", e.getMessage(), totalAttempts - attempt);
+                    throw e;
+                }
+                attempt++;
+                CompletableFuture<HttpResponse<String>> call = null;
                 try {
                     String fullModelName = "models/" + modelName;
                     String url = String.format("https://generativelanguage.googleapis.com/%s/%s:generateContent?key=%s",
                             version, fullModelName, apiKey);
+                    Duration attemptTimeout = Duration.ofMillis(attemptTimeoutMs);
+                    Duration timeout = deadline.remaining().compareTo(attemptTimeout) < 0 ? deadline.remaining() : attemptTimeout;
 
-                    log.info("[ATTEMPT] Calling {}/{}...", version, modelName);
-
-                    HttpHeaders headers = new HttpHeaders();
-                    headers.setContentType(MediaType.APPLICATION_JSON);
-                    headers.set("x-goog-api-key", apiKey);
+                    log.info("[ATTEMPT] Calling {}/{} (timeout {} ms)...", version, modelName, timeout.toMillis());
 
                     Map<String, Object> part = Map.of("text", promptText);
                     Map<String, Object> content = Map.of("parts", List.of(part));
                     Map<String, Object> body = Map.of("contents", List.of(content));
 
-                    HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-                    ResponseEntity<String> response = restTemplate.postForEntity(url, entity, String.class);
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                            .timeout(timeout)
+                            .header("Content-Type", "application/json")
+                            .header("x-goog-api-key", apiKey)
+                            .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                            .build();
+                    call = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+                    deadline.register(call);
+                    HttpResponse<String> response = call.get();
 
-                    if (response.getStatusCode() == HttpStatus.OK) {
-                        JsonNode root = objectMapper.readTree(response.getBody());
+                    if (response.statusCode() == 200) {
+                        JsonNode root = objectMapper.readTree(response.body());
+                        JsonNode usage = root.path("usageMetadata");
                         String result = root.path("candidates").get(0).path("content").path("parts").get(0).path("text")
                                 .asText();
-                        if (result != null && !result.isBlank()) {
+                        boolean answered = result != null && !result.isBlank();
+                        usageAggregator.recordCall(modelName, answered, usage.path("promptTokenCount").asLong(),
+                                usage.path("candidatesTokenCount").asLong());
+                        if (answered) {
                             log.info("[SUCCESS] Response from {}/{}", version, modelName);
                             return result;
                         }
+                    } else {
+                        usageAggregator.recordCall(modelName, false, 0, 0);
+                        log.warn("[STATUS] {}/{} returned {}", version, modelName, response.statusCode());
                     }
-                } catch (org.springframework.web.client.HttpClientErrorException e) {
-                    log.warn("[STATUS] {}/{} returned {}", version, modelName, e.getStatusCode());
+                } catch (CancellationException e) {
+                    abortedCalls.increment();
+                    skippedAttempts.increment(totalAttempts - attempt);
+                    log.warn("[DEADLINE] Aborted in-flight call to {}/{}: {}", version, modelName, deadline.getCancelReason());
+                    throw new DeadlineExceededException("Analysis cancelled: " + deadline.getCancelReason());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new DeadlineExceededException("Analysis interrupted");
+                } catch (ExecutionException e) {
+                    usageAggregator.recordCall(modelName, false, 0, 0);
+                    if (e.getCause() instanceof HttpTimeoutException)
+                        log.warn("[TIMEOUT] {}/{} did not answer in time.", version, modelName);
+                    else
+                        log.error("[ERROR] {}/{}: {}", version, modelName, e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
                 } catch (Exception e) {
                     log.error("[ERROR] {}/{}: {}", version, modelName, e.getMessage());
+                } finally {
+                    if (call != null)
+                        deadline.unregister(call);
                 }
             }
         }
@@ -154,34 +408,32 @@ public class AiAnalysisService {
         return clean.toString().trim();
     }
 
-    public Map<String, String> detectPatterns(String requirements) {
-        log.info("[STAGE: PATTERNS] Detecting design patterns for requirements...");
+    /**
+     * Asks the model to confirm or replace locally detected pattern candidates. Returns an empty map when the
+     * model is unavailable, so callers keep their local suggestions.
+     */
+    public Map<String, String> refinePatterns(String requirements, Collection<String> candidates) {
+        log.info("[STAGE: PATTERNS] Refining design patterns {} with the model...", candidates);
         validateEnvironment();
         Map<String, String> patterns = new LinkedHashMap<>();
         try {
             String prompt = "Act as a Software Architecture expert. Analyze these requirements: " + requirements +
-                    "\nIdentify the 3 most relevant design patterns. " +
+                    "\nA quick keyword scan suggested: " + String.join(", ", candidates) + "." +
+                    "\nConfirm or replace them with the 3 most relevant design patterns. " +
                     "\nOutput format: Pattern Name | Brief Explanation (max 15 words) " +
                     "\nOne per line. No other text.";
             String resultText = callGemini(prompt);
 
-            if (resultText != null && !resultText.isBlank()) {
+            if (resultText != null && !resultText.isBlank() && !resultText.startsWith("ERROR:")) {
                 String[] lines = resultText.split("\\n");
                 for (String line : lines) {
-                    if (line.contains("|")) {
-                        String[] parts = line.split("\\|");
-                        patterns.put(parts[0].trim(), parts[1].trim());
-                    }
+                    String[] parts = line.split("\\|");
+                    if (parts.length >= 2 && !parts[0].isBlank())
+                        patterns.put(parts[0].replaceAll("[*#`]", "").trim(), parts[1].trim());
                 }
             }
         } catch (Exception e) {
-            log.error("Pattern detection failed: {}", e.getMessage());
-        }
-
-        if (patterns.isEmpty()) {
-            patterns.put("Strategy", "Handles different implementations dynamically.");
-            patterns.put("Singleton", "Ensures a single instance of a resource.");
-            patterns.put("Observer", "Notifies dependent objects of state changes.");
+            log.error("Pattern refinement failed: {}", e.getMessage());
         }
         return patterns;
     }
@@ -0,0 +1,121 @@
+package com.aiuml.backend.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Time budget of one analysis, visible to every stage running on the analysing thread through
+ * {@link #current()}. Cancelling it aborts the outbound calls registered with it, so a request nobody
+ * waits for stops consuming threads and model quota.
+ */
+public class AnalysisDeadline {
+    private static final ThreadLocal<AnalysisDeadline> CURRENT = new ThreadLocal<>();
+    private static final AnalysisDeadline UNBOUNDED = new AnalysisDeadline(0, false);
+
+    private final long deadlineNanos;
+    private final boolean bounded;
+    private final Set<Future<?>> inFlight = ConcurrentHashMap.newKeySet();
+    private final List<Runnable> cancelListeners = new CopyOnWriteArrayList<>();
+    private final AtomicReference<String> cancelReason = new AtomicReference<>();
+
+    private AnalysisDeadline(long deadlineNanos, boolean bounded) {
+        this.deadlineNanos = deadlineNanos;
+        this.bounded = bounded;
+    }
+
+    public static AnalysisDeadline after(Duration budget) {
+        return new AnalysisDeadline(System.nanoTime() + budget.toNanos(), true);
+    }
+
+    /**
+     * The deadline of the analysis running on this thread, or an unbounded one outside any analysis.
+     */
+    public static AnalysisDeadline current() {
+        AnalysisDeadline deadline = CURRENT.get();
+        return deadline != null ? deadline : UNBOUNDED;
+    }
+
+    public <T> T call(Supplier<T> work) {
+        AnalysisDeadline previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return work.get();
+        } finally {
+            if (previous != null)
+                CURRENT.set(previous);
+            else
+                CURRENT.remove();
+        }
+    }
+
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    public Duration remaining() {
+        if (!bounded)
+            return Duration.ofMillis(Long.MAX_VALUE);
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    public boolean isCancelled() {
+        return cancelReason.get() != null;
+    }
+
+    public String getCancelReason() {
+        return cancelReason.get();
+    }
+
+    /**
+     * Marks the analysis as abandoned and aborts any outbound call in progress. Only the first reason is kept.
+     *
+     * @return true if this call cancelled the analysis, false if it was already cancelled
+     */
+    public boolean cancel(String reason) {
+        if (!bounded || !cancelReason.compareAndSet(null, reason))
+            return false;
+        for (Future<?> call : inFlight)
+            call.cancel(true);
+        cancelListeners.forEach(Runnable::run);
+        return true;
+    }
+
+    /**
+     * Runs {@code listener} when the analysis is cancelled, e.g. to propagate the cancellation to another node.
+     */
+    public void onCancel(Runnable listener) {
+        cancelListeners.add(listener);
+        if (isCancelled())
+            listener.run();
+    }
+
+    /**
+     * Throws if the analysis was cancelled, has already run out, or has less than {@code minimum} left.
+     */
+    public void check(Duration minimum) {
+        if (isCancelled())
+            throw new DeadlineExceededException("Analysis cancelled: " + cancelReason.get());
+        if (!bounded)
+            return;
+        // remaining() never goes below zero, so an expired deadline must be caught explicitly
+        Duration left = remaining();
+        if (left.isZero() || left.compareTo(minimum) < 0)
+            throw new DeadlineExceededException("Analysis deadline exceeded");
+    }
+
+    public void register(Future<?> call) {
+        inFlight.add(call);
+        if (isCancelled())
+            call.cancel(true);
+    }
+
+    public void unregister(Future<?> call) {
+        inFlight.remove(call);
+    }
+}
@@ -0,0 +1,366 @@
+package com.aiuml.backend.service;
+
+import com.aiuml.backend.model.AnalysisJob;
+import com.aiuml.backend.repository.AnalysisJobRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Distributes analyses across every backend node through the {@code analysis_jobs} table.
+ * <p>
+ * A submitted job is claimed by exactly one worker with {@code FOR UPDATE SKIP LOCKED}, which takes a lease
+ * renewed by heartbeat while the analysis runs. When a node dies its leases lapse and another node picks the
+ * job up again, up to {@code max-attempts} times. {@code NOTIFY} wakes idle workers on enqueue and tells the
+ * submitting node when its job finished; periodic polling covers notifications lost on reconnect.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class AnalysisJobService {
+    private static final String CHANNEL_QUEUED = "analysis_jobs";
+    private static final String CHANNEL_DONE = "analysis_jobs_done";
+    private static final String CHANNEL_CANCEL = "analysis_jobs_cancel";
+    private static final long SHUTDOWN_WAIT_MS = 10_000;
+    private static final TypeReference<Map<String, Object>> RESULT_TYPE = new TypeReference<>() {
+    };
+
+    // Expired leases are reclaimed by the same statement that picks up queued work
+    private static final String CLAIM_SQL = """
+            UPDATE analysis_jobs
+               SET status = 'RUNNING', lease_owner = ?, attempts = attempts + 1,
+                   lease_expires_at = now() + make_interval(secs => ?)
+             WHERE id = (SELECT id FROM analysis_jobs
+                          WHERE status = 'QUEUED'
+                             OR (status = 'RUNNING' AND lease_expires_at < now() AND attempts < ?)
+                          ORDER BY id
+                          LIMIT 1
+                            FOR UPDATE SKIP LOCKED)
+            RETURNING id""";
+
+    private static final String HEARTBEAT_SQL = """
+            UPDATE analysis_jobs SET lease_expires_at = now() + make_interval(secs => ?)
+             WHERE lease_owner = ? AND status = 'RUNNING'""";
+
+    private static final String FAIL_EXHAUSTED_SQL = """
+            UPDATE analysis_jobs
+               SET status = 'FAILED', lease_owner = NULL, finished_at = now(),
+                   error = 'Lease expired after ' || attempts || ' attempt(s)'
+             WHERE status = 'RUNNING' AND lease_expires_at < now() AND attempts >= ?
+            RETURNING id""";
+
+    private final AnalysisJobRepository jobRepository;
+    private final ProjectAnalysisService analysisService;
+    private final PgNotificationListener notificationListener;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${aiuml.jobs.enabled:false}")
+    private boolean enabled;
+
+    @Value("${aiuml.jobs.workers:4}")
+    private int workers;
+
+    @Value("${aiuml.jobs.lease-ms:30000}")
+    private long leaseMs;
+
+    @Value("${aiuml.jobs.heartbeat-interval-ms:10000}")
+    private long heartbeatIntervalMs;
+
+    @Value("${aiuml.jobs.poll-interval-ms:5000}")
+    private long pollIntervalMs;
+
+    @Value("${aiuml.jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${aiuml.jobs.max-queued:500}")
+    private long maxQueued;
+
+    @Value("${aiuml.jobs.retention-ms:604800000}")
+    private long retentionMs;
+
+    private final String nodeId = ProcessHandle.current().pid() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    private final Semaphore wakeUp = new Semaphore(0);
+    private final Map<Long, CompletableFuture<Map<String, Object>>> pending = new ConcurrentHashMap<>();
+    private final Map<Long, AnalysisDeadline> running = new ConcurrentHashMap<>();
+    private final List<Thread> workerThreads = new ArrayList<>();
+    // Leases must not wait behind the shared @Scheduled tasks (sweeps, purges, cache eviction, usage flushes)
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "analysis-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean started;
+    private volatile boolean stopping;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled)
+            return;
+        notificationListener.subscribe(CHANNEL_QUEUED, payload -> wakeUp.release());
+        notificationListener.subscribe(CHANNEL_DONE, this::onDone);
+        notificationListener.subscribe(CHANNEL_CANCEL, this::onCancel);
+        notificationListener.start();
+
+        Gauge.builder("aiuml.jobs.running", running, Map::size)
+                .description("Analysis jobs executing on this node")
+                .register(meterRegistry);
+        Gauge.builder("aiuml.jobs.pending", pending, Map::size)
+                .description("Jobs submitted by this node and awaiting a result")
+                .register(meterRegistry);
+
+        started = true;
+        for (int i = 0; i < workers; i++) {
+            Thread worker = new Thread(this::work, "analysis-worker-" + (i + 1));
+            worker.setDaemon(true);
+            worker.start();
+            workerThreads.add(worker);
+        }
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeatIntervalMs, heartbeatIntervalMs,
+                TimeUnit.MILLISECONDS);
+        log.info("[JOBS] Node {} started {} worker(s).", nodeId, workers);
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopping = true;
+        started = false;
+        // Interrupted analyses are released for another node; any left behind are reclaimed once their lease lapses
+        workerThreads.forEach(Thread::interrupt);
+        try {
+            for (Thread worker : workerThreads)
+                worker.join(SHUTDOWN_WAIT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Leases stay renewed until the workers have released their jobs
+            heartbeats.shutdownNow();
+        }
+    }
+
+    /**
+     * Persists the analysis as a job for any node to run, and completes the returned future once it finished.
+     * Throws {@link RejectedExecutionException} when the cluster-wide queue is full.
+     */
+    public CompletableFuture<Map<String, Object>> submit(Long projectId, String requirements, String type,
+            boolean incremental, AnalysisDeadline deadline) {
+        if (jobRepository.countByStatus(AnalysisJob.Status.QUEUED) >= maxQueued)
+            throw new RejectedExecutionException("Analysis queue is full");
+
+        Instant now = Instant.now();
+        AnalysisJob job = jobRepository.save(AnalysisJob.builder()
+                .projectId(projectId)
+                .type(type)
+                .requirements(requirements)
+                .incremental(incremental)
+                .status(AnalysisJob.Status.QUEUED)
+                .deadlineAt(now.plus(deadline.remaining()))
+                .createdAt(now)
+                .build());
+        Long jobId = job.getId();
+
+        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        pending.put(jobId, future);
+        future.whenComplete((response, error) -> pending.remove(jobId));
+        deadline.onCancel(() -> cancel(jobId, deadline.getCancelReason()));
+
+        notify(CHANNEL_QUEUED, jobId.toString());
+        log.info("[JOBS] Queued job {} for project {}.", jobId, projectId);
+        return future;
+    }
+
+    private void cancel(Long jobId, String reason) {
+        int updated = jobRepository.cancel(jobId, reason, Instant.now(), AnalysisJob.Status.CANCELLED,
+                List.of(AnalysisJob.Status.QUEUED, AnalysisJob.Status.RUNNING));
+        if (updated > 0)
+            notify(CHANNEL_CANCEL, jobId + ":" + reason);
+        CompletableFuture<Map<String, Object>> future = pending.get(jobId);
+        if (future != null)
+            future.completeExceptionally(new DeadlineExceededException("Analysis cancelled: " + reason));
+    }
+
+    private void work() {
+        while (started) {
+            try {
+                Optional<AnalysisJob> job = claim();
+                if (job.isPresent())
+                    process(job.get());
+                else
+                    wakeUp.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                log.error("[JOBS] Worker loop failed: {}", e.getMessage());
+                try {
+                    Thread.sleep(pollIntervalMs);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private Optional<AnalysisJob> claim() {
+        List<Long> ids = jdbcTemplate.queryForList(CLAIM_SQL, Long.class, nodeId, leaseMs / 1000.0, maxAttempts);
+        if (ids.isEmpty())
+            return Optional.empty();
+        meterRegistry.counter("aiuml.jobs.claimed").increment();
+        return jobRepository.findById(ids.get(0));
+    }
+
+    private void process(AnalysisJob job) {
+        log.info("[JOBS] Node {} running job {} (attempt {}).", nodeId, job.getId(), job.getAttempts());
+        AnalysisDeadline deadline = AnalysisDeadline.after(Duration.between(Instant.now(), job.getDeadlineAt()));
+        running.put(job.getId(), deadline);
+        try {
+            Map<String, Object> response = deadline.call(() -> analysisService.analyze(job.getProjectId(),
+                    job.getRequirements(), job.getType(), job.isIncremental()));
+            finish(job, AnalysisJob.Status.DONE, objectMapper.writeValueAsString(response), null);
+        } catch (DeadlineExceededException e) {
+            if (stopping) {
+                // Aborted by this node's shutdown; any other overrun (including one caught by a per-attempt
+                // minimum while some budget remains) would overrun again on the next node
+                release(job);
+                return;
+            }
+            analysisService.cancel(deadline, ProjectAnalysisService.REASON_DEADLINE);
+            finish(job, AnalysisJob.Status.CANCELLED, null, e.getMessage());
+        } catch (Exception e) {
+            if (stopping) {
+                release(job);
+                return;
+            }
+            log.error("[JOBS] Job {} failed on attempt {}: {}", job.getId(), job.getAttempts(), e.getMessage());
+            if (job.getAttempts() < maxAttempts && jobRepository.requeue(job.getId(), nodeId, e.getMessage(),
+                    AnalysisJob.Status.QUEUED, AnalysisJob.Status.RUNNING) > 0)
+                notify(CHANNEL_QUEUED, job.getId().toString());
+            else
+                finish(job, AnalysisJob.Status.FAILED, null, e.getMessage());
+        } finally {
+            running.remove(job.getId());
+        }
+    }
+
+    private void release(AnalysisJob job) {
+        Thread.interrupted(); // the shutdown interrupt would abort the JDBC calls below
+        if (jobRepository.release(job.getId(), nodeId, AnalysisJob.Status.QUEUED, AnalysisJob.Status.RUNNING) > 0) {
+            notify(CHANNEL_QUEUED, job.getId().toString());
+            log.info("[JOBS] Released job {} for another node.", job.getId());
+        }
+    }
+
+    private void finish(AnalysisJob job, AnalysisJob.Status status, String result, String error) {
+        int updated = jobRepository.finish(job.getId(), nodeId, status, result, error, Instant.now(), AnalysisJob.Status.RUNNING);
+        if (updated == 0) {
+            // Lease lost to another node, or cancelled meanwhile: the current owner reports the outcome
+            log.warn("[JOBS] Job {} no longer leased by {}. Discarding {} outcome.", job.getId(), nodeId, status);
+            return;
+        }
+        meterRegistry.counter("aiuml.jobs.completed", "status", status.name().toLowerCase()).increment();
+        notify(CHANNEL_DONE, job.getId().toString());
+    }
+
+    /**
+     * Renews this node's leases. Runs on its own thread; a failure is logged and retried on the next tick, since
+     * an exception would cancel all further runs.
+     */
+    void heartbeat() {
+        if (running.isEmpty())
+            return;
+        try {
+            int renewed = jdbcTemplate.update(HEARTBEAT_SQL, leaseMs / 1000.0, nodeId);
+            log.debug("[JOBS] Renewed {} lease(s).", renewed);
+        } catch (RuntimeException e) {
+            log.warn("[JOBS] Lease renewal failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Fails jobs whose lease lapsed too often, and resolves this node's pending jobs whose completion
+     * notice was missed.
+     */
+    @Scheduled(fixedDelayString = "${aiuml.jobs.poll-interval-ms:5000}")
+    public void sweep() {
+        if (!started)
+            return;
+        for (Long id : jdbcTemplate.queryForList(FAIL_EXHAUSTED_SQL, Long.class, maxAttempts)) {
+            log.warn("[JOBS] Job {} abandoned after {} lease(s).", id, maxAttempts);
+            notify(CHANNEL_DONE, id.toString());
+        }
+        if (!pending.isEmpty())
+            jobRepository.findAllById(pending.keySet()).forEach(this::resolve);
+    }
+
+    /**
+     * Deletes finished jobs once they are older than the retention, so the table holds only recent history.
+     * Safe to run on every node at once.
+     */
+    @Scheduled(fixedDelayString = "${aiuml.jobs.purge-interval-ms:3600000}")
+    public void purge() {
+        if (!started)
+            return;
+        int purged = jobRepository.purge(List.of(AnalysisJob.Status.DONE, AnalysisJob.Status.FAILED, AnalysisJob.Status.CANCELLED),
+                Instant.now().minusMillis(retentionMs));
+        if (purged > 0) {
+            meterRegistry.counter("aiuml.jobs.purged").increment(purged);
+            log.info("[JOBS] Purged {} finished job(s) older than {} ms.", purged, retentionMs);
+        }
+    }
+
+    private void onDone(String payload) {
+        Long jobId = Long.valueOf(payload);
+        if (pending.containsKey(jobId))
+            jobRepository.findById(jobId).ifPresent(this::resolve);
+    }
+
+    private void onCancel(String payload) {
+        int separator = payload.indexOf(':');
+        AnalysisDeadline deadline = running.get(Long.valueOf(payload.substring(0, separator)));
+        if (deadline != null)
+            analysisService.cancel(deadline, payload.substring(separator + 1));
+    }
+
+    private void resolve(AnalysisJob job) {
+        CompletableFuture<Map<String, Object>> future = pending.get(job.getId());
+        if (future == null)
+            return;
+        switch (job.getStatus()) {
+            case DONE -> {
+                try {
+                    future.complete(objectMapper.readValue(job.getResult(), RESULT_TYPE));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+            case CANCELLED -> future.completeExceptionally(new DeadlineExceededException("Analysis cancelled: " + job.getError()));
+            case FAILED -> future.completeExceptionally(new IllegalStateException("Analysis failed: " + job.getError()));
+            default -> {
+                // Still queued or running
+            }
+        }
+    }
+
+    private void notify(String channel, String payload) {
+        jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", channel, payload);
+    }
+}
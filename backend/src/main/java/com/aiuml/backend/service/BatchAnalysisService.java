@@ -0,0 +1,232 @@
+package com.aiuml.backend.service;
+
+import com.aiuml.backend.dto.BatchAnalysisRequest;
+import com.aiuml.backend.model.Project;
+import com.aiuml.backend.repository.ProjectRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Analyzes many projects in one request, e.g. a teacher re-analyzing a class. Projects are loaded in a
+ * single query, items with identical requirements and type share one pipeline run, and at most
+ * {@code parallelism} runs of a batch are in flight on the analysis pool (or the cluster-wide job queue
+ * when enabled). A full pool or queue delays the remaining runs with backoff rather than failing them, and
+ * when a group's first item fails the next one is analyzed in its place. Duplicates adopt the stored result,
+ * with {@code patternSource} telling whether the LLM-refined suggestions were in yet. Each item's result is
+ * streamed as an SSE {@code result} event as soon as it is known; a final {@code done} event carries the counts.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class BatchAnalysisService {
+    private final ProjectRepository projectRepository;
+    private final ProjectAnalysisService analysisService;
+    private final AnalysisJobService analysisJobService;
+    private final TaskScheduler taskScheduler;
+
+    @Qualifier("batchReportingExecutor")
+    private final ThreadPoolTaskExecutor batchReportingExecutor;
+
+    @Value("${aiuml.analysis.batch.parallelism:4}")
+    private int parallelism;
+
+    @Value("${aiuml.analysis.batch.max-items:200}")
+    private int maxItems;
+
+    @Value("${aiuml.analysis.batch.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    private static final long RETRY_INITIAL_MS = 250;
+    private static final long RETRY_MAX_MS = 5_000;
+
+    private record Item(Long projectId, String type) {
+    }
+
+    private record Group(String type, String requirements, List<Item> items) {
+    }
+
+    /**
+     * Starts the batch and returns the emitter its results are streamed to. Projects not owned by
+     * {@code userId} are rejected per item unless {@code privileged} (teachers and admins).
+     */
+    public SseEmitter start(BatchAnalysisRequest request, Long userId, boolean privileged) {
+        List<BatchAnalysisRequest.Item> requested = request.getItems() != null ? request.getItems() : List.of();
+        if (requested.isEmpty() || requested.size() > maxItems)
+            throw new IllegalArgumentException("A batch holds between 1 and " + maxItems + " items");
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Batch batch = new Batch(emitter, request.isIncremental(), requested.size());
+        emitter.onTimeout(() -> batch.abandon(ProjectAnalysisService.REASON_DEADLINE));
+        emitter.onError(e -> batch.abandon(ProjectAnalysisService.REASON_CLIENT_DISCONNECT));
+
+        Set<Long> ids = new HashSet<>();
+        requested.forEach(item -> ids.add(item.getProjectId()));
+        Map<Long, Project> projects = new HashMap<>();
+        projectRepository.findAllById(ids).forEach(project -> projects.put(project.getId(), project));
+
+        // Identical requirements and type share one run; the first item of a group is the one analyzed
+        Map<List<String>, Group> groups = new LinkedHashMap<>();
+        for (BatchAnalysisRequest.Item requestedItem : requested) {
+            Item item = new Item(requestedItem.getProjectId(), requestedItem.getType() != null
+                    ? requestedItem.getType().toUpperCase() : "CLASS");
+            Project project = projects.get(item.projectId());
+            if (project == null)
+                batch.failed(item, "Project not found");
+            else if (!privileged && (project.getUser() == null || !userId.equals(project.getUser().getId())))
+                batch.failed(item, "Not allowed to analyze this project");
+            else if (project.getRequirements() == null || project.getRequirements().isBlank())
+                batch.failed(item, "Project has no requirements");
+            else
+                groups.computeIfAbsent(List.of(item.type(), project.getRequirements()),
+                        k -> new Group(item.type(), project.getRequirements(), new ArrayList<>())).items().add(item);
+        }
+        log.info("[BATCH] {} item(s) in {} distinct run(s), parallelism {}.", requested.size(), groups.size(), parallelism);
+
+        batch.pending.addAll(groups.values());
+        for (int i = 0; i < parallelism; i++)
+            batch.startNext();
+        return emitter;
+    }
+
+    private final class Batch {
+        final SseEmitter emitter;
+        final boolean incremental;
+        final AtomicInteger remaining;
+        final AtomicInteger succeeded = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final Deque<Group> pending = new ConcurrentLinkedDeque<>();
+        final AtomicLong backoffMs = new AtomicLong();
+        final List<AnalysisDeadline> deadlines = new CopyOnWriteArrayList<>();
+        final AtomicBoolean abandoned = new AtomicBoolean();
+
+        Batch(SseEmitter emitter, boolean incremental, int items) {
+            this.emitter = emitter;
+            this.incremental = incremental;
+            this.remaining = new AtomicInteger(items);
+        }
+
+        void startNext() {
+            Group group = abandoned.get() ? null : pending.poll();
+            if (group == null)
+                return;
+            Item leader = group.items().get(0);
+            AnalysisDeadline deadline = analysisService.newDeadline(null);
+            deadlines.add(deadline);
+            try {
+                // With the cluster-wide queue enabled, whichever node claims the job runs it
+                CompletableFuture<Map<String, Object>> analysis = analysisJobService.isEnabled()
+                        ? analysisJobService.submit(leader.projectId(), group.requirements(), group.type(), incremental, deadline)
+                        : analysisService.submit(leader.projectId(), group.requirements(), group.type(), incremental, deadline);
+                backoffMs.set(0);
+                // Completed by the job service's NOTIFY listener or scheduler thread when the cluster queue is on;
+                // the database writes and SSE sends below must not hold those threads
+                analysis.whenCompleteAsync((response, error) -> {
+                    deadlines.remove(deadline);
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause == null)
+                        report(group, response);
+                    else if (cause instanceof DeadlineExceededException)
+                        group.items().forEach(item -> failed(item, cause.getMessage()));
+                    else
+                        promote(group, cause.getMessage());
+                    startNext();
+                }, batchReportingExecutor);
+            } catch (RejectedExecutionException e) {
+                // The pool or queue is full for now: keep the group and try again later instead of failing it
+                deadlines.remove(deadline);
+                pending.offerFirst(group);
+                long delay = backoffMs.updateAndGet(previous -> Math.min(previous == 0 ? RETRY_INITIAL_MS : previous * 2, RETRY_MAX_MS));
+                log.info("[BATCH] Analysis capacity exhausted. Retrying in {} ms.", delay);
+                taskScheduler.schedule(() -> batchReportingExecutor.execute(this::startNext), Instant.now().plusMillis(delay));
+            }
+        }
+
+        // Only the leader failed (e.g. its project changed underneath): the next item of the group takes over
+        private void promote(Group group, String message) {
+            List<Item> items = group.items();
+            failed(items.remove(0), message);
+            if (!items.isEmpty())
+                pending.offerFirst(group);
+        }
+
+        private void report(Group group, Map<String, Object> response) {
+            List<Item> items = group.items();
+            Item leader = items.get(0);
+            succeeded(leader, response);
+            for (Item duplicate : items.subList(1, items.size())) {
+                try {
+                    succeeded(duplicate, analysisService.adopt(duplicate.projectId(), group.requirements(), group.type(),
+                            leader.projectId(), response));
+                } catch (Exception e) {
+                    failed(duplicate, e.getMessage());
+                }
+            }
+        }
+
+        void succeeded(Item item, Map<String, Object> response) {
+            succeeded.incrementAndGet();
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("projectId", item.projectId());
+            event.put("type", item.type());
+            event.put("status", "ok");
+            event.putAll(response);
+            emit(event);
+        }
+
+        void failed(Item item, String message) {
+            failed.incrementAndGet();
+            log.warn("[BATCH] Project {} ({}) failed: {}", item.projectId(), item.type(), message);
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("projectId", item.projectId());
+            event.put("type", item.type());
+            event.put("status", "error");
+            event.put("message", message != null ? message : "Analysis failed");
+            emit(event);
+        }
+
+        private void emit(Map<String, Object> event) {
+            try {
+                if (!abandoned.get())
+                    emitter.send(SseEmitter.event().name("result").data(event));
+            } catch (IOException | IllegalStateException e) {
+                abandon(ProjectAnalysisService.REASON_CLIENT_DISCONNECT);
+            }
+            if (remaining.decrementAndGet() == 0 && !abandoned.get()) {
+                try {
+                    emitter.send(SseEmitter.event().name("done")
+                            .data(Map.of("succeeded", succeeded.get(), "failed", failed.get())));
+                    emitter.complete();
+                } catch (IOException | IllegalStateException e) {
+                    abandon(ProjectAnalysisService.REASON_CLIENT_DISCONNECT);
+                }
+            }
+        }
+
+        // Nobody reads the stream any more: drop queued runs and cancel the ones in flight
+        void abandon(String reason) {
+            if (!abandoned.compareAndSet(false, true))
+                return;
+            log.warn("[BATCH] Abandoned ({}). Skipping {} queued run(s).", reason, pending.size());
+            pending.clear();
+            deadlines.forEach(deadline -> analysisService.cancel(deadline, reason));
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.aiuml.backend.service;
+
+/**
+ * Thrown when an analysis runs out of its time budget or is cancelled because nobody is waiting for it.
+ */
+public class DeadlineExceededException extends RuntimeException {
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,168 @@
+package com.aiuml.backend.service;
+
+import com.aiuml.backend.dto.DiagramHistory;
+import com.aiuml.backend.model.DiagramVersion;
+import com.aiuml.backend.model.Project;
+import com.aiuml.backend.repository.DiagramVersionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Version history of each project's diagrams. Every {@code snapshot-interval} versions a full snapshot is
+ * stored; versions in between are line deltas against their predecessor, so reconstructing any version
+ * replays at most {@code snapshot-interval - 1} deltas.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class DiagramHistoryService {
+    private final DiagramVersionRepository versionRepository;
+
+    @Value("${aiuml.history.snapshot-interval:10}")
+    private int snapshotInterval;
+
+    @Value("${aiuml.history.compress:true}")
+    private boolean compress;
+
+    /**
+     * Appends {@code code} as the next version, unless it equals the latest one. The caller must hold a row
+     * lock on {@code project} so that concurrent writers do not pick the same version number.
+     */
+    @Transactional
+    public void record(Project project, String type, String code) {
+        String normalizedType = type.toUpperCase();
+        Optional<DiagramVersionRepository.VersionView> latest = versionRepository
+                .findFirstByProjectIdAndTypeOrderByVersionNumberDesc(project.getId(), normalizedType);
+        byte[] full = code.getBytes(StandardCharsets.UTF_8);
+        if (latest.isEmpty()) {
+            save(project, normalizedType, 1, DiagramVersion.Kind.SNAPSHOT, full, full.length);
+            return;
+        }
+
+        List<DiagramVersion> chain = chain(project.getId(), normalizedType, latest.get().getVersionNumber());
+        String previous = replay(chain);
+        if (previous.equals(code))
+            return;
+        int number = latest.get().getVersionNumber() + 1;
+        if (chain.size() >= snapshotInterval) {
+            save(project, normalizedType, number, DiagramVersion.Kind.SNAPSHOT, full, full.length);
+            return;
+        }
+        byte[] delta = LineDiff.encode(LineDiff.edits(LineDiff.lines(previous), LineDiff.lines(code)))
+                .getBytes(StandardCharsets.UTF_8);
+        // A rewrite costs as much as a snapshot, and the snapshot shortens later reconstructions
+        if (delta.length >= full.length)
+            save(project, normalizedType, number, DiagramVersion.Kind.SNAPSHOT, full, full.length);
+        else
+            save(project, normalizedType, number, DiagramVersion.Kind.DELTA, delta, full.length);
+    }
+
+    public DiagramHistory history(Long projectId, String type) {
+        List<DiagramVersionRepository.VersionView> versions = versionRepository
+                .findByProjectIdAndTypeOrderByVersionNumberDesc(projectId, type.toUpperCase());
+        long stored = versions.stream().mapToLong(DiagramVersionRepository.VersionView::getStoredBytes).sum();
+        long fullCopies = versions.stream().mapToLong(DiagramVersionRepository.VersionView::getFullBytes).sum();
+        return new DiagramHistory(versions, stored, fullCopies);
+    }
+
+    public String reconstruct(Long projectId, String type, int version) {
+        return replay(chain(projectId, type.toUpperCase(), version));
+    }
+
+    public List<String> compare(Long projectId, String type, int from, int to) {
+        return LineDiff.unified(reconstruct(projectId, type, from), reconstruct(projectId, type, to));
+    }
+
+    /**
+     * The nearest snapshot at or before {@code version}, followed by the deltas leading up to it.
+     */
+    private List<DiagramVersion> chain(Long projectId, String type, int version) {
+        DiagramVersionRepository.VersionView snapshot = versionRepository
+                .findFirstByProjectIdAndTypeAndKindAndVersionNumberLessThanEqualOrderByVersionNumberDesc(projectId, type,
+                        DiagramVersion.Kind.SNAPSHOT, version)
+                .orElseThrow(() -> new RuntimeException("Diagram version not found"));
+        List<DiagramVersion> chain = versionRepository.findByProjectIdAndTypeAndVersionNumberBetweenOrderByVersionNumber(
+                projectId, type, snapshot.getVersionNumber(), version);
+        if (chain.get(chain.size() - 1).getVersionNumber() != version)
+            throw new RuntimeException("Diagram version not found");
+        return chain;
+    }
+
+    private String replay(List<DiagramVersion> chain) {
+        String text = unpack(chain.get(0));
+        for (DiagramVersion delta : chain.subList(1, chain.size()))
+            text = LineDiff.apply(text, unpack(delta));
+        return text;
+    }
+
+    private void save(Project project, String type, int number, DiagramVersion.Kind kind, byte[] content, int fullBytes) {
+        byte[] deflated = compress ? deflate(content) : null;
+        boolean compressed = deflated != null && deflated.length < content.length;
+        byte[] payload = compressed ? deflated : content;
+        versionRepository.save(DiagramVersion.builder()
+                .project(project)
+                .type(type)
+                .versionNumber(number)
+                .kind(kind)
+                .payload(payload)
+                .compressed(compressed)
+                .storedBytes(payload.length)
+                .fullBytes(fullBytes)
+                .createdAt(Instant.now())
+                .build());
+        log.info("[HISTORY] Project {} {} v{}: {} stored as {} bytes ({} bytes as a full copy).", project.getId(), type,
+                number, kind, payload.length, fullBytes);
+    }
+
+    private String unpack(DiagramVersion version) {
+        byte[] content = version.isCompressed() ? inflate(version.getPayload()) : version.getPayload();
+        return new String(content, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 16);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished())
+                out.write(buffer, 0, deflater.deflate(buffer));
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IllegalStateException("Truncated diagram version payload");
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt diagram version payload", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
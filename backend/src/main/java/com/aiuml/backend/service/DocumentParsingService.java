@@ -1,31 +1,342 @@
 package com.aiuml.backend.service;
 
+import com.aiuml.backend.dto.ParsedDocument;
+import com.aiuml.backend.model.DocumentExtraction;
+import com.aiuml.backend.repository.DocumentExtractionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.tika.Tika;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
 @Service
 @Slf4j
+@RequiredArgsConstructor
 public class DocumentParsingService {
-    private final Tika tika = new Tika();
+    private static final String PARSER_BUSY = "Parser busy, try again shortly.";
+
+    private final DocumentExtractionRepository extractionRepository;
+    private final DocumentTextExtractor textExtractor;
+    private final MeterRegistry meterRegistry;
+
+    @Qualifier("documentParsingExecutor")
+    private final ThreadPoolTaskExecutor documentParsingExecutor;
+
+    @Value("${aiuml.upload.batch.max-files:20}")
+    private int maxBatchFiles;
+
+    @Value("${aiuml.upload.batch.max-archive-bytes:52428800}")
+    private int maxArchiveBytes;
+
+    @Value("${aiuml.upload.cache.max-entries:5000}")
+    private int maxCacheEntries;
+
+    @Value("${aiuml.upload.cache.max-content-chars:2000000}")
+    private int maxCachedChars;
+
+    @Value("${aiuml.parsing.max-document-bytes:20971520}")
+    private long maxDocumentBytes;
+
+    private Counter cacheHits;
+    private Counter parsed;
+    private Counter failed;
+
+    @PostConstruct
+    void registerMetrics() {
+        cacheHits = meterRegistry.counter("aiuml.upload.parse", "result", "cache_hit");
+        parsed = meterRegistry.counter("aiuml.upload.parse", "result", "parsed");
+        failed = meterRegistry.counter("aiuml.upload.parse", "result", "failed");
+        Gauge.builder("aiuml.upload.parse.avoided.ratio", this, DocumentParsingService::parseAvoidanceRatio)
+                .description("Share of uploads served from the extraction cache without running Tika")
+                .register(meterRegistry);
+    }
 
     public String parseDocument(MultipartFile file) {
         log.info("[STAGE: PARSE] Parsing document: {}, Content Type: {}", file.getOriginalFilename(), file.getContentType());
         try {
-            // Tika automatically detects format (PDF, DOCX, TXT, etc.) and extracts text
-            String content = tika.parseToString(file.getInputStream());
-            
+            return extractText(lookup(file, file.getSize())).join();
+        } catch (Exception e) {
+            String message = rootMessage(e);
+            failed.increment();
+            log.error("[STAGE: ERROR] Failed to parse document: {}", message);
+            return "Error parsing document: " + message;
+        }
+    }
+
+    /**
+     * Parses several uploads in parallel on the bounded parsing pool. Zip archives are expanded in place,
+     * so results follow the submission order (and archive order within a zip) regardless of which parse
+     * finishes first. A failing file is reported in its own result and never fails the batch.
+     */
+    public List<ParsedDocument> parseDocuments(List<MultipartFile> files) {
+        List<NamedSource> sources = new ArrayList<>();
+        ExpansionBudget budget = new ExpansionBudget(maxArchiveBytes);
+        for (MultipartFile file : files) {
+            String name = file.getOriginalFilename() != null ? file.getOriginalFilename() : "file";
+            if (isZip(file)) {
+                try {
+                    unzip(file, sources, budget);
+                } catch (IOException e) {
+                    log.error("[STAGE: ERROR] Failed to expand archive {}: {}", name, e.getMessage());
+                    sources.add(new NamedSource(name, null, 0, "Invalid archive: " + e.getMessage()));
+                }
+            } else {
+                sources.add(new NamedSource(name, file, file.getSize(), null));
+            }
+            checkFileCount(sources.size());
+        }
+
+        log.info("[STAGE: PARSE] Batch of {} document(s).", sources.size());
+        List<CompletableFuture<ParsedDocument>> futures = new ArrayList<>();
+        for (NamedSource source : sources) {
+            if (source.error() != null) {
+                futures.add(CompletableFuture.completedFuture(new ParsedDocument(source.name(), null, source.error(), 0)));
+                continue;
+            }
+            futures.add(parseOne(source));
+        }
+
+        List<ParsedDocument> results = new ArrayList<>();
+        for (CompletableFuture<ParsedDocument> future : futures)
+            results.add(future.join());
+        return results;
+    }
+
+    /**
+     * Joins successful results in order, each preceded by a marker naming its source file.
+     */
+    public String concatenate(List<ParsedDocument> documents) {
+        StringBuilder combined = new StringBuilder();
+        for (ParsedDocument document : documents) {
+            if (document.getContent() == null || document.getContent().isEmpty())
+                continue;
+            if (combined.length() > 0)
+                combined.append("\n\n");
+            combined.append("===== ").append(document.getFileName()).append(" =====\n\n").append(document.getContent());
+        }
+        return combined.toString();
+    }
+
+    private CompletableFuture<ParsedDocument> parseOne(NamedSource source) {
+        long start = System.nanoTime();
+        CompletableFuture<String> content;
+        try {
+            // Reading, hashing and the cache lookup run on the parsing pool as well, so a batch's files overlap
+            content = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return lookup(source.source(), source.size());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, documentParsingExecutor).thenCompose(this::extractText);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(new ParsedDocument(source.name(), null, PARSER_BUSY, 0));
+        }
+        return content.handle((text, error) -> {
+            long durationMs = (System.nanoTime() - start) / 1_000_000;
+            if (error == null)
+                return new ParsedDocument(source.name(), text, null, durationMs);
+            if (rootCause(error) instanceof RejectedExecutionException)
+                return new ParsedDocument(source.name(), null, PARSER_BUSY, durationMs);
+            String message = rootMessage(error);
+            failed.increment();
+            log.error("[STAGE: ERROR] Failed to parse {}: {}", source.name(), message);
+            return new ParsedDocument(source.name(), null, message, durationMs);
+        });
+    }
+
+    /**
+     * Reads and hashes the document and looks its text up in the extraction cache.
+     */
+    private Lookup lookup(InputStreamSource source, long size) throws IOException {
+        if (size > maxDocumentBytes)
+            throw new IllegalArgumentException("Document larger than " + maxDocumentBytes + " bytes");
+        MessageDigest digest = sha256();
+        byte[] bytes = read(source, digest);
+        String hash = HexFormat.of().formatHex(digest.digest());
+        Optional<DocumentExtraction> cached = extractionRepository.findById(hash);
+        if (cached.isEmpty())
+            return new Lookup(hash, bytes, null);
+        extractionRepository.touch(hash, Instant.now());
+        cacheHits.increment();
+        log.info("[STAGE: PARSE] Cache hit for {}. Skipping Tika.", hash.substring(0, 12));
+        return new Lookup(hash, null, cached.get().getContent());
+    }
+
+    /**
+     * Serves the cached text when the same bytes were parsed before; otherwise queues the parse on the
+     * time-limited Tika pool.
+     */
+    private CompletableFuture<String> extractText(Lookup lookup) {
+        if (lookup.cached() != null)
+            return CompletableFuture.completedFuture(lookup.cached());
+
+        // Tika automatically detects format (PDF, DOCX, TXT, etc.) and extracts text
+        String hash = lookup.hash();
+        long size = lookup.bytes().length;
+        return textExtractor.extract(new ByteArrayResource(lookup.bytes())).thenApply(content -> {
+            parsed.increment();
             if (content == null || content.isBlank()) {
                 log.warn("[STAGE: PARSE] Document parsed but returned empty content.");
-                return "";
+                content = "";
+            } else {
+                log.info("[STAGE: PARSE] Successfully extracted {} characters.", content.length());
+                content = content.trim();
+            }
+            remember(hash, content, size);
+            return content;
+        });
+    }
+
+    private static Throwable rootCause(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof UncheckedIOException) && error.getCause() != null)
+            error = error.getCause();
+        return error;
+    }
+
+    private static String rootMessage(Throwable error) {
+        return rootCause(error).getMessage();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads the document once, hashing it on the way into the buffer Tika later parses, so the upload is
+     * never read twice. The buffer is bounded by the document size limit.
+     */
+    private byte[] read(InputStreamSource source, MessageDigest digest) throws IOException {
+        if (source instanceof ByteArrayResource resource) {
+            // Already in memory (archive entries)
+            byte[] bytes = resource.getByteArray();
+            digest.update(bytes);
+            return bytes;
+        }
+        try (InputStream in = new DigestInputStream(source.getInputStream(), digest)) {
+            byte[] bytes = in.readNBytes((int) Math.min(maxDocumentBytes + 1, Integer.MAX_VALUE - 8));
+            if (bytes.length > maxDocumentBytes)
+                throw new IllegalArgumentException("Document larger than " + maxDocumentBytes + " bytes");
+            return bytes;
+        }
+    }
+
+    private void remember(String hash, String content, long sizeBytes) {
+        if (content.length() > maxCachedChars)
+            return;
+        Instant now = Instant.now();
+        try {
+            extractionRepository.save(DocumentExtraction.builder()
+                    .contentHash(hash)
+                    .content(content)
+                    .sizeBytes(sizeBytes)
+                    .createdAt(now)
+                    .lastAccessedAt(now)
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            // Same document uploaded concurrently; the other request already stored it
+        }
+    }
+
+    /**
+     * Trims the extraction cache back to its size limit, least recently used first. Runs on a schedule
+     * rather than after every stored parse, so a cache miss never pays for counting the table.
+     */
+    @Scheduled(fixedDelayString = "${aiuml.upload.cache.evict-interval-ms:60000}")
+    public void evict() {
+        long overflow = extractionRepository.count() - maxCacheEntries;
+        if (overflow <= 0)
+            return;
+        List<String> evicted = extractionRepository.findLeastRecentlyUsed(PageRequest.of(0, (int) Math.min(overflow, Integer.MAX_VALUE)));
+        extractionRepository.deleteAllByIdInBatch(evicted);
+        log.debug("[STAGE: PARSE] Evicted {} cached extraction(s).", evicted.size());
+    }
+
+    private boolean isZip(MultipartFile file) {
+        String name = file.getOriginalFilename();
+        return "application/zip".equals(file.getContentType()) || "application/x-zip-compressed".equals(file.getContentType())
+                || (name != null && name.toLowerCase().endsWith(".zip"));
+    }
+
+    private void checkFileCount(int count) {
+        if (count > maxBatchFiles)
+            throw new IllegalArgumentException("Too many files in batch: more than " + maxBatchFiles);
+    }
+
+    /**
+     * Expands an archive into in-memory sources appended to {@code sources}. The file count and the
+     * uncompressed bytes are charged against limits shared by the whole batch, and expansion stops at the
+     * first entry that exceeds either, so several crafted archives together cannot exhaust the heap.
+     */
+    private void unzip(MultipartFile file, List<NamedSource> sources, ExpansionBudget budget) throws IOException {
+        try (ZipInputStream zip = new ZipInputStream(file.getInputStream())) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                String baseName = name.substring(name.lastIndexOf('/') + 1);
+                if (entry.isDirectory() || name.startsWith("__MACOSX/") || baseName.startsWith(".") || baseName.isEmpty())
+                    continue;
+                checkFileCount(sources.size() + 1);
+                byte[] bytes = zip.readNBytes((int) Math.min(budget.remainingBytes + 1, Integer.MAX_VALUE));
+                budget.remainingBytes -= bytes.length;
+                if (budget.remainingBytes < 0)
+                    throw new IllegalArgumentException("Archives in batch expand beyond " + maxArchiveBytes + " bytes");
+                sources.add(new NamedSource(name, new ByteArrayResource(bytes), bytes.length, null));
             }
-            
-            log.info("[STAGE: PARSE] Successfully extracted {} characters.", content.length());
-            return content.trim();
-        } catch (Exception e) {
-            log.error("[STAGE: ERROR] Failed to parse document: {}", e.getMessage());
-            return "Error parsing document: " + e.getMessage();
         }
     }
+
+    private record NamedSource(String name, InputStreamSource source, long size, String error) {
+    }
+
+    // Either the cached text, or the bytes to parse
+    private record Lookup(String hash, byte[] bytes, String cached) {
+    }
+
+    // Uncompressed bytes all archives of one batch may still expand to
+    private static final class ExpansionBudget {
+        long remainingBytes;
+
+        ExpansionBudget(long remainingBytes) {
+            this.remainingBytes = remainingBytes;
+        }
+    }
+
+    private double parseAvoidanceRatio() {
+        double hits = cacheHits.count();
+        double total = hits + parsed.count();
+        return total == 0 ? 0 : hits / total;
+    }
 }
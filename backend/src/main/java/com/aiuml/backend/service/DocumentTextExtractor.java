@@ -0,0 +1,211 @@
+package com.aiuml.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.exception.WriteLimitReachedException;
+import org.apache.tika.fork.ForkParser;
+import org.apache.tika.fork.ParserFactoryFactory;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.AutoDetectParserFactory;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs Tika on the bounded parsing pool with a per-document time limit, so a malformed or pathological file
+ * cannot hold a request thread or grow the extracted text without bound.
+ * <p>
+ * The default {@code fork} mode parses in child JVMs with their own heap limit, which Tika kills and replaces
+ * when a parse exceeds the timeout, so a runaway document never touches the JVM serving requests. Packaged as a
+ * Spring Boot jar, the children are started from the Tika jars in {@code aiuml.parsing.fork.tika-bin} (the
+ * Docker image ships tika-app there); otherwise from this application's class loader. A test parse at startup
+ * checks that the children work, and falls back to {@code in-process} mode when they do not.
+ * <p>
+ * In {@code in-process} mode a parse that overruns its limit is reported as failed and its worker interrupted,
+ * but Tika may keep spinning until it notices, holding a pool thread and heap. New documents are rejected until
+ * every timed-out parse has returned.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class DocumentTextExtractor {
+    private final MeterRegistry meterRegistry;
+
+    @Qualifier("documentParsingExecutor")
+    private final ThreadPoolTaskExecutor documentParsingExecutor;
+
+    @Value("${aiuml.parsing.mode:fork}")
+    private String mode;
+
+    @Value("${aiuml.parsing.timeout-ms:30000}")
+    private long timeoutMs;
+
+    @Value("${aiuml.parsing.max-chars:100000}")
+    private int maxChars;
+
+    @Value("${aiuml.parsing.fork.max-heap:256m}")
+    private String forkMaxHeap;
+
+    @Value("${aiuml.parsing.fork.tika-bin:}")
+    private String forkTikaBin;
+
+    private final Parser autoDetectParser = new AutoDetectParser();
+    private ForkParser forkParser;
+    private ScheduledExecutorService watchdog;
+    private Counter rejected;
+    private Counter timedOut;
+    // In-process parses that overran their limit and have not returned yet
+    private final AtomicInteger stuck = new AtomicInteger();
+
+    @PostConstruct
+    void init() {
+        if (isForked())
+            startForkParser();
+        watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "parse-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        rejected = meterRegistry.counter("aiuml.upload.parse.rejected");
+        timedOut = meterRegistry.counter("aiuml.upload.parse.timeouts");
+        ThreadPoolExecutor pool = documentParsingExecutor.getThreadPoolExecutor();
+        Gauge.builder("aiuml.upload.parse.pool.saturation", pool, p -> (double) p.getActiveCount() / p.getMaximumPoolSize())
+                .description("Share of parsing threads busy")
+                .register(meterRegistry);
+        Gauge.builder("aiuml.upload.parse.pool.queued", pool, p -> p.getQueue().size())
+                .description("Documents waiting for a parsing thread")
+                .register(meterRegistry);
+        Gauge.builder("aiuml.upload.parse.stuck", stuck, AtomicInteger::get)
+                .description("In-process parses still running after their time limit")
+                .register(meterRegistry);
+        log.info("[STAGE: PARSE] Tika runs {} with a {} ms limit per document.", mode, timeoutMs);
+    }
+
+    private void startForkParser() {
+        forkParser = forkTikaBin.isBlank()
+                ? new ForkParser(DocumentTextExtractor.class.getClassLoader(), autoDetectParser)
+                : new ForkParser(Path.of(forkTikaBin), new ParserFactoryFactory(AutoDetectParserFactory.class.getName(), Map.of()));
+        forkParser.setPoolSize(documentParsingExecutor.getMaxPoolSize());
+        forkParser.setJavaCommand(List.of("java", "-Xmx" + forkMaxHeap, "-Djava.awt.headless=true"));
+        forkParser.setServerParseTimeoutMillis(timeoutMs);
+        try {
+            String probe = parse(new ByteArrayResource("fork check".getBytes(StandardCharsets.UTF_8)));
+            if (!probe.contains("fork check"))
+                throw new IllegalStateException("unexpected output: " + probe);
+        } catch (Exception e) {
+            log.error("[STAGE: PARSE] Tika child JVMs do not work ({}). Falling back to in-process parsing.", e.getMessage());
+            forkParser.close();
+            forkParser = null;
+            mode = "in-process";
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        watchdog.shutdownNow();
+        if (forkParser != null)
+            forkParser.close();
+    }
+
+    /**
+     * Extracts the text of {@code source} on the parsing pool. The future fails with {@link TimeoutException}
+     * once the parse has run longer than the configured limit. Throws {@link RejectedExecutionException}
+     * right away when the pool is saturated, or in-process while a timed-out parse is still running.
+     */
+    public CompletableFuture<String> extract(InputStreamSource source) {
+        if (!isForked() && stuck.get() > 0) {
+            rejected.increment();
+            throw new RejectedExecutionException("Waiting for " + stuck.get() + " timed-out parse(s) to finish");
+        }
+        CompletableFuture<String> result = new CompletableFuture<>();
+        try {
+            documentParsingExecutor.execute(() -> run(source, result));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+        return result;
+    }
+
+    private void run(InputStreamSource source, CompletableFuture<String> result) {
+        Thread worker = Thread.currentThread();
+        Object guard = new Object();
+        AtomicBoolean overran = new AtomicBoolean();
+        long start = System.nanoTime();
+        // The limit counts from the start of the parse, not from when the document was queued
+        ScheduledFuture<?> timeout = watchdog.schedule(() -> {
+            synchronized (guard) {
+                if (result.completeExceptionally(new TimeoutException("Parsing took longer than " + timeoutMs + " ms"))) {
+                    timedOut.increment();
+                    overran.set(true);
+                    stuck.incrementAndGet();
+                    worker.interrupt();
+                }
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+
+        String outcome = "success";
+        try {
+            result.complete(parse(source));
+        } catch (Exception e) {
+            outcome = result.isDone() ? "timeout" : "failed";
+            result.completeExceptionally(e);
+        } finally {
+            timeout.cancel(false);
+            synchronized (guard) {
+                if (result.isCompletedExceptionally() && outcome.equals("success"))
+                    outcome = "timeout";
+                if (overran.get())
+                    stuck.decrementAndGet();
+                Thread.interrupted(); // never leak the watchdog's interrupt into the next document
+            }
+            Timer.builder("aiuml.upload.parse.duration")
+                    .tag("mode", mode)
+                    .tag("outcome", outcome)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private String parse(InputStreamSource source) throws Exception {
+        BodyContentHandler handler = new BodyContentHandler(maxChars);
+        Parser parser = isForked() ? forkParser : autoDetectParser;
+        try (InputStream in = source.getInputStream()) {
+            parser.parse(in, handler, new Metadata(), new ParseContext());
+        } catch (Exception e) {
+            if (!WriteLimitReachedException.isWriteLimitReached(e))
+                throw e;
+            log.warn("[STAGE: PARSE] Document exceeds {} characters. Keeping the first {}.", maxChars, maxChars);
+        }
+        return handler.toString();
+    }
+
+    private boolean isForked() {
+        return "fork".equalsIgnoreCase(mode);
+    }
+}
@@ -0,0 +1,88 @@
+package com.aiuml.backend.service;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+
+/**
+ * Aho-Corasick automaton over a fixed set of lower-case phrases. Finds every occurrence of every phrase
+ * in a single pass over the text, so matching cost does not grow with the number of phrases. A phrase
+ * ending in {@code *} is a stem and may be followed by further letters ("orchestrat*" matches
+ * "orchestration"); any other phrase must end at a word boundary, optionally after a plural "s".
+ */
+public class KeywordMatcher {
+    private static final class Node {
+        final Map<Character, Node> next = new HashMap<>();
+        final List<Integer> outputs = new ArrayList<>();
+        Node fail;
+    }
+
+    private final Node root = new Node();
+    private final int[] lengths;
+    private final boolean[] stems;
+
+    public KeywordMatcher(List<String> phrases) {
+        lengths = new int[phrases.size()];
+        stems = new boolean[phrases.size()];
+        for (int i = 0; i < phrases.size(); i++) {
+            String phrase = phrases.get(i).toLowerCase();
+            stems[i] = phrase.endsWith("*");
+            if (stems[i])
+                phrase = phrase.substring(0, phrase.length() - 1);
+            lengths[i] = phrase.length();
+            Node node = root;
+            for (char c : phrase.toCharArray())
+                node = node.next.computeIfAbsent(c, k -> new Node());
+            node.outputs.add(i);
+        }
+        buildFailureLinks();
+    }
+
+    private void buildFailureLinks() {
+        Deque<Node> queue = new ArrayDeque<>();
+        root.fail = root;
+        for (Node child : root.next.values()) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            for (Map.Entry<Character, Node> edge : node.next.entrySet()) {
+                Node child = edge.getValue();
+                Node fail = node.fail;
+                while (fail != root && !fail.next.containsKey(edge.getKey()))
+                    fail = fail.fail;
+                Node target = fail.next.get(edge.getKey());
+                child.fail = target != null && target != child ? target : root;
+                child.outputs.addAll(child.fail.outputs);
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Reports the index of each phrase found in {@code text}. Matching is case-insensitive and only counts
+     * whole words, so "state" matches "states" but neither "restate" nor "statement".
+     */
+    public void match(String text, IntConsumer onMatch) {
+        Node state = root;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            while (state != root && !state.next.containsKey(c))
+                state = state.fail;
+            state = state.next.getOrDefault(c, root);
+            for (int phrase : state.outputs) {
+                int start = i - lengths[phrase] + 1;
+                if ((start == 0 || !Character.isLetterOrDigit(text.charAt(start - 1)))
+                        && (stems[phrase] || endsWord(text, i + 1)))
+                    onMatch.accept(phrase);
+            }
+        }
+    }
+
+    // True when a word ends at {@code end}, allowing one plural "s" before the boundary
+    private static boolean endsWord(String text, int end) {
+        if (end < text.length() && Character.toLowerCase(text.charAt(end)) == 's')
+            end++;
+        return end >= text.length() || !Character.isLetterOrDigit(text.charAt(end));
+    }
+}
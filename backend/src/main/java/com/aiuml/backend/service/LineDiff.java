@@ -0,0 +1,119 @@
+package com.aiuml.backend.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Line-level diff used by the diagram history. Deltas are encoded as an edit script with one operation
+ * per line: {@code =n} keeps the next n lines, {@code -n} drops them, {@code +text} inserts a line.
+ */
+final class LineDiff {
+    // Above this many LCS cells (after trimming the common prefix and suffix) the change is treated as a rewrite
+    private static final long MAX_CELLS = 4_000_000;
+
+    private LineDiff() {
+    }
+
+    record Edit(char op, String line) {
+    }
+
+    static String[] lines(String text) {
+        return text.split("\n", -1);
+    }
+
+    static List<Edit> edits(String[] a, String[] b) {
+        int prefix = 0;
+        while (prefix < a.length && prefix < b.length && a[prefix].equals(b[prefix]))
+            prefix++;
+        int suffix = 0;
+        while (suffix < a.length - prefix && suffix < b.length - prefix
+                && a[a.length - 1 - suffix].equals(b[b.length - 1 - suffix]))
+            suffix++;
+        int n = a.length - prefix - suffix;
+        int m = b.length - prefix - suffix;
+
+        List<Edit> edits = new ArrayList<>(Math.max(a.length, b.length));
+        for (int k = 0; k < prefix; k++)
+            edits.add(new Edit('=', a[k]));
+        if ((long) n * m > MAX_CELLS) {
+            for (int i = 0; i < n; i++)
+                edits.add(new Edit('-', a[prefix + i]));
+            for (int j = 0; j < m; j++)
+                edits.add(new Edit('+', b[prefix + j]));
+        } else {
+            int[][] lcs = new int[n + 1][m + 1];
+            for (int i = n - 1; i >= 0; i--)
+                for (int j = m - 1; j >= 0; j--)
+                    lcs[i][j] = a[prefix + i].equals(b[prefix + j]) ? lcs[i + 1][j + 1] + 1
+                            : Math.max(lcs[i + 1][j], lcs[i][j + 1]);
+            int i = 0;
+            int j = 0;
+            while (i < n && j < m) {
+                if (a[prefix + i].equals(b[prefix + j])) {
+                    edits.add(new Edit('=', a[prefix + i++]));
+                    j++;
+                } else if (lcs[i + 1][j] >= lcs[i][j + 1]) {
+                    edits.add(new Edit('-', a[prefix + i++]));
+                } else {
+                    edits.add(new Edit('+', b[prefix + j++]));
+                }
+            }
+            while (i < n)
+                edits.add(new Edit('-', a[prefix + i++]));
+            while (j < m)
+                edits.add(new Edit('+', b[prefix + j++]));
+        }
+        for (int k = a.length - suffix; k < a.length; k++)
+            edits.add(new Edit('=', a[k]));
+        return edits;
+    }
+
+    static String encode(List<Edit> edits) {
+        StringBuilder script = new StringBuilder();
+        int i = 0;
+        while (i < edits.size()) {
+            Edit edit = edits.get(i);
+            if (edit.op() == '+') {
+                script.append('+').append(edit.line()).append('\n');
+                i++;
+                continue;
+            }
+            int run = 0;
+            while (i < edits.size() && edits.get(i).op() == edit.op()) {
+                run++;
+                i++;
+            }
+            script.append(edit.op()).append(run).append('\n');
+        }
+        return script.toString();
+    }
+
+    static String apply(String base, String script) {
+        String[] source = lines(base);
+        List<String> target = new ArrayList<>(source.length);
+        int position = 0;
+        for (String operation : script.split("\n")) {
+            switch (operation.charAt(0)) {
+                case '+' -> target.add(operation.substring(1));
+                case '=' -> {
+                    int count = Integer.parseInt(operation.substring(1));
+                    for (int k = 0; k < count; k++)
+                        target.add(source[position++]);
+                }
+                case '-' -> position += Integer.parseInt(operation.substring(1));
+                default -> throw new IllegalStateException("Corrupt diagram delta operation: " + operation);
+            }
+        }
+        return String.join("\n", target);
+    }
+
+    /**
+     * Full-context diff for display: every line prefixed with ' ', '-' or '+'.
+     */
+    static List<String> unified(String from, String to) {
+        List<String> diff = new ArrayList<>();
+        for (Edit edit : edits(lines(from), lines(to)))
+            diff.add((edit.op() == '=' ? ' ' : edit.op()) + edit.line());
+        return diff;
+    }
+}
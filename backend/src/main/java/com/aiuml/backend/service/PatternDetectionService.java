@@ -0,0 +1,274 @@
+package com.aiuml.backend.service;
+
+import com.aiuml.backend.model.PatternSuggestion;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Pattern;
+
+/**
+ * Ranks design patterns locally from phrases in the requirements and, for code input, from structural
+ * signals in the source. Answers without any model call; the LLM is only used afterwards, in the
+ * background, to refine the stored suggestions.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PatternDetectionService {
+    private static final double PHRASE_WEIGHT = 1.0;
+    private static final double SIGNAL_WEIGHT = 2.5;
+    private static final int MAX_HITS_PER_PHRASE = 3; // a repeated word should not dominate the ranking
+
+    private static final List<PatternDefinition> CATALOG = List.of(
+            // Creational
+            definition("Singleton", "Ensures a single shared instance of a resource.", 0.20,
+                    List.of("singleton", "single instance", "only one instance", "one instance", "global access",
+                            "shared configuration", "global configuration", "connection pool"),
+                    List.of("static\\s+\\w+\\s+getInstance\\s*\\(", "private\\s+static\\s+(final\\s+)?\\w+\\s+(instance|INSTANCE)\\b")),
+            definition("Factory Method", "Delegates object creation to subclasses or dedicated creators.", 0.30,
+                    List.of("factory", "create different types", "depending on the type", "type of account",
+                            "various types", "different kinds", "instantiate"),
+                    List.of("\\bcreate[A-Z]\\w*\\s*\\(", "\\w+Factory\\b")),
+            definition("Abstract Factory", "Creates families of related objects without naming concrete classes.", 0.05,
+                    List.of("family of", "families of", "theme", "look and feel", "cross-platform", "multiple platforms"),
+                    List.of("interface\\s+\\w*Factory\\b")),
+            definition("Builder", "Constructs complex objects step by step.", 0.20,
+                    List.of("builder", "step by step", "optional fields", "optional parameters", "many options",
+                            "configure", "assemble", "compose a"),
+                    List.of("\\.builder\\s*\\(\\)", "class\\s+\\w*Builder\\b", "\\.build\\s*\\(\\)")),
+            definition("Prototype", "Creates new objects by cloning existing instances.", 0.02,
+                    List.of("clone", "copy of", "duplicate", "template object"),
+                    List.of("implements\\s+[\\w\\s,]*Cloneable", "\\.clone\\s*\\(")),
+            // Structural
+            definition("Adapter", "Makes incompatible interfaces work together.", 0.15,
+                    List.of("adapter", "legacy", "third-party", "third party", "external api", "external service",
+                            "integrate with", "integration", "convert between", "compatib*"),
+                    List.of("class\\s+\\w*Adapter\\b")),
+            definition("Bridge", "Separates an abstraction from its implementation so both can vary.", 0.02,
+                    List.of("bridge", "independently vary", "multiple implementations", "different backends"),
+                    List.of()),
+            definition("Composite", "Treats individual objects and groups uniformly as a tree.", 0.10,
+                    List.of("composite", "hierarchy", "tree", "nested", "sub-categor*", "subcategor*", "folder",
+                            "parent and child", "part-whole", "contains other"),
+                    List.of("List<\\s*(Component|Node|Element)\\s*>\\s+children", "\\bchildren\\b")),
+            definition("Decorator", "Adds responsibilities to objects dynamically.", 0.10,
+                    List.of("decorator", "add-on", "add on", "extra features", "additional features", "toppings",
+                            "wrap*", "extend behavior", "extend behaviour", "dynamically add"),
+                    List.of("class\\s+\\w*Decorator\\b")),
+            definition("Facade", "Provides a simple interface to a complex subsystem.", 0.25,
+                    List.of("facade", "simple interface", "simplified interface", "single entry point",
+                            "subsystem", "orchestrat*", "unified api"),
+                    List.of("class\\s+\\w*(Facade|Service)\\b")),
+            definition("Flyweight", "Shares fine-grained objects to save memory.", 0.01,
+                    List.of("flyweight", "large number of similar objects", "millions of", "memory usage", "share common state"),
+                    List.of()),
+            definition("Proxy", "Controls access to another object.", 0.10,
+                    List.of("proxy", "lazy load", "lazy loading", "access control", "caching", "cache", "remote",
+                            "permission", "authorization"),
+                    List.of("class\\s+\\w*Proxy\\b")),
+            // Behavioural
+            definition("Chain of Responsibility", "Passes a request along a chain of handlers.", 0.05,
+                    List.of("chain of", "approval", "approve", "escalat*", "middleware", "filter", "handler", "pipeline of"),
+                    List.of("setNext\\s*\\(", "\\bnext(Handler)?\\s*\\.\\s*handle")),
+            definition("Command", "Encapsulates requests as objects for undo, queueing or logging.", 0.10,
+                    List.of("command", "undo", "redo", "queue request", "macro", "history of actions", "action log"),
+                    List.of("interface\\s+\\w*Command\\b", "\\bexecute\\s*\\(\\s*\\)", "\\bundo\\s*\\(")),
+            definition("Iterator", "Traverses a collection without exposing its structure.", 0.03,
+                    List.of("iterate", "traverse", "browse through", "collection of"),
+                    List.of("implements\\s+[\\w\\s,<>]*Iter(ator|able)")),
+            definition("Mediator", "Centralises communication between collaborating objects.", 0.05,
+                    List.of("mediator", "chat room", "coordinat*", "communicate with each other", "control tower", "dispatcher"),
+                    List.of("class\\s+\\w*Mediator\\b")),
+            definition("Memento", "Captures and restores an object's state.", 0.03,
+                    List.of("memento", "snapshot", "restore", "save state", "rollback", "checkpoint", "version history"),
+                    List.of("class\\s+\\w*(Memento|Snapshot)\\b")),
+            definition("Observer", "Notifies dependent objects of state changes.", 0.25,
+                    List.of("observer", "notify", "notification", "alert", "subscribe", "subscriber", "listener",
+                            "real-time", "real time", "when the status changes", "updates automatically", "event"),
+                    List.of("implements\\s+[\\w\\s,]*Listener", "\\b(add|remove)(Listener|Observer|Subscriber)\\s*\\(",
+                            "\\bnotify\\w*\\s*\\(")),
+            definition("State", "Changes behaviour when an object's internal state changes.", 0.10,
+                    List.of("state", "status", "workflow", "lifecycle", "pending", "approved", "rejected", "shipped",
+                            "transition"),
+                    List.of("interface\\s+\\w*State\\b", "\\benum\\s+\\w*(State|Status)\\b")),
+            definition("Strategy", "Selects an algorithm at runtime behind a common interface.", 0.25,
+                    List.of("strategy", "algorithm", "different ways", "payment method", "pricing", "discount",
+                            "interchangeable", "policy", "sorting", "calculate"),
+                    List.of("interface\\s+\\w*(Strategy|Policy)\\b", "set\\w*Strategy\\s*\\(")),
+            definition("Template Method", "Defines an algorithm skeleton and lets subclasses fill in steps.", 0.05,
+                    List.of("template", "same steps", "skeleton", "common steps", "general procedure"),
+                    List.of("abstract\\s+class", "protected\\s+abstract\\s+\\w+")),
+            definition("Visitor", "Adds operations to object structures without changing their classes.", 0.02,
+                    List.of("visitor", "export to", "report over", "operations on elements"),
+                    List.of("\\baccept\\s*\\(\\s*\\w*Visitor", "\\bvisit\\w*\\s*\\(")),
+            definition("Interpreter", "Evaluates sentences of a small language or grammar.", 0.01,
+                    List.of("interpreter", "grammar", "expression", "parse formula", "query language", "rule engine"),
+                    List.of("interface\\s+\\w*Expression\\b", "\\binterpret\\s*\\(")),
+            // Architectural
+            definition("MVC", "Separates data, presentation and input handling.", 0.30,
+                    List.of("mvc", "user interface", "dashboard", "web application", "web page", "form", "screen", "view"),
+                    List.of("@(Rest)?Controller\\b", "class\\s+\\w*(Controller|View)\\b")),
+            definition("Repository", "Abstracts data access behind a collection-like interface.", 0.35,
+                    List.of("repository", "store", "database", "persist*", "save", "record", "history", "data access",
+                            "retrieve", "search"),
+                    List.of("interface\\s+\\w*(Repository|Dao|DAO)\\b", "extends\\s+\\w*Repository<", "@Repository\\b")),
+            definition("Layered Architecture", "Organises the system into presentation, business and data layers.", 0.30,
+                    List.of("layer", "presentation", "business logic", "backend", "front-end", "frontend", "three-tier",
+                            "n-tier", "api"),
+                    List.of("@Service\\b", "package\\s+[\\w.]*\\.(service|controller|repository)\\b")),
+            definition("Publish-Subscribe", "Decouples producers and consumers through asynchronous events.", 0.10,
+                    List.of("publish*", "message queue", "kafka", "rabbitmq", "event bus", "broadcast", "asynchronous",
+                            "event-driven", "event driven"),
+                    List.of("@EventListener\\b", "\\bpublish\\w*\\s*\\(", "ApplicationEvent")),
+            definition("Dependency Injection", "Supplies collaborators from outside instead of constructing them.", 0.15,
+                    List.of("dependency injection", "inversion of control", "loosely coupled", "pluggable", "testab*",
+                            "mock"),
+                    List.of("@Autowired\\b", "@RequiredArgsConstructor\\b", "@Inject\\b")),
+            definition("Microservices", "Splits the system into independently deployable services.", 0.05,
+                    List.of("microservice", "independently deploy", "scale independently", "service discovery",
+                            "api gateway", "distributed"),
+                    List.of("@FeignClient\\b", "@EnableDiscoveryClient\\b")),
+            definition("CQRS", "Separates read models from write models.", 0.02,
+                    List.of("cqrs", "read model", "write model", "reporting", "analytics", "read-heavy", "audit log"),
+                    List.of("class\\s+\\w*(Query|Command)Handler\\b")),
+            definition("Client-Server", "Centralises shared resources on a server used by many clients.", 0.10,
+                    List.of("client", "server", "mobile app", "browser", "remote access", "online"),
+                    List.of("RestTemplate", "WebClient", "HttpClient")),
+            definition("Pipes and Filters", "Processes data through a sequence of independent stages.", 0.03,
+                    List.of("pipeline", "stages", "processing steps", "transform", "etl", "batch processing"),
+                    List.of("\\.stream\\(\\)(\\s*\\.\\s*(map|filter)\\s*\\(){2,}")));
+
+    private static final KeywordMatcher MATCHER;
+    private static final int[] PHRASE_OWNER;
+
+    static {
+        List<String> phrases = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        for (int i = 0; i < CATALOG.size(); i++) {
+            for (String phrase : CATALOG.get(i).phrases()) {
+                phrases.add(phrase);
+                owners.add(i);
+            }
+        }
+        MATCHER = new KeywordMatcher(phrases);
+        PHRASE_OWNER = owners.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private final AiAnalysisService aiService;
+    private final ProjectService projectService;
+
+    @Qualifier("patternRefinementExecutor")
+    private final ThreadPoolTaskExecutor patternRefinementExecutor;
+
+    @Value("${aiuml.patterns.max-suggestions:3}")
+    private int maxSuggestions;
+
+    @Value("${aiuml.patterns.llm-refinement:true}")
+    private boolean llmRefinement;
+
+    /**
+     * Detects patterns locally, stores them as the project's suggestions and returns them. When refinement
+     * is enabled the LLM result replaces the stored suggestions once it arrives, unless a newer analysis of
+     * different requirements has replaced them first; the caller never waits. Suggestions already stored for
+     * the same requirements (local, refined or from a template) are returned as they are, without a model call.
+     */
+    public Map<String, String> suggestPatterns(Long projectId, String requirements) {
+        Integer hash = requirements.hashCode();
+        List<PatternSuggestion> stored = projectService.getPatternSuggestions(projectId);
+        if (!stored.isEmpty() && stored.stream().allMatch(suggestion -> hash.equals(suggestion.getRequirementsHash()))) {
+            Map<String, String> current = new LinkedHashMap<>();
+            stored.stream()
+                    .sorted(Comparator.comparing(PatternSuggestion::getId))
+                    .forEach(suggestion -> current.put(suggestion.getName(), suggestion.getExplanation()));
+            log.info("[STAGE: PATTERNS] Requirements of project {} unchanged. Keeping {} suggestions.", projectId,
+                    stored.get(0).getSource());
+            return current;
+        }
+
+        Map<String, String> local = detect(requirements);
+        projectService.savePatternSuggestions(projectId, local, "LOCAL", requirements);
+
+        // Nobody will read a refinement of an analysis that was abandoned
+        if (llmRefinement && !AnalysisDeadline.current().isCancelled()) {
+            try {
+                CompletableFuture.runAsync(UsageContext.wrap(() -> refine(projectId, requirements, local)), patternRefinementExecutor);
+            } catch (RejectedExecutionException e) {
+                log.warn("[STAGE: PATTERNS] Refinement queue full. Keeping local suggestions for project {}.", projectId);
+            }
+        }
+        return local;
+    }
+
+    public Map<String, String> detect(String text) {
+        long start = System.nanoTime();
+        double[] scores = new double[CATALOG.size()];
+        if (text != null && !text.isBlank()) {
+            int[] hits = new int[PHRASE_OWNER.length];
+            MATCHER.match(text.replaceAll("\\s+", " "), phrase -> hits[phrase]++);
+            for (int phrase = 0; phrase < hits.length; phrase++) {
+                if (hits[phrase] > 0)
+                    scores[PHRASE_OWNER[phrase]] += PHRASE_WEIGHT * Math.min(hits[phrase], MAX_HITS_PER_PHRASE);
+            }
+            if (looksLikeCode(text)) {
+                for (int i = 0; i < CATALOG.size(); i++) {
+                    for (Pattern signal : CATALOG.get(i).signals()) {
+                        if (signal.matcher(text).find())
+                            scores[i] += SIGNAL_WEIGHT;
+                    }
+                }
+            }
+        }
+
+        // With no evidence at all the priors decide, favouring patterns common in typical CRUD assignments
+        Integer[] order = new Integer[CATALOG.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, Comparator.<Integer>comparingDouble(i -> scores[i] + CATALOG.get(i).prior()).reversed());
+
+        Map<String, String> result = new LinkedHashMap<>();
+        for (int i = 0; i < Math.min(maxSuggestions, order.length); i++) {
+            PatternDefinition definition = CATALOG.get(order[i]);
+            result.put(definition.name(), definition.explanation());
+        }
+        log.info("[STAGE: PATTERNS] Local detection ranked {} in {} us.", result.keySet(), (System.nanoTime() - start) / 1000);
+        return result;
+    }
+
+    private void refine(Long projectId, String requirements, Map<String, String> local) {
+        try {
+            Map<String, String> refined = aiService.refinePatterns(requirements, local.keySet());
+            if (refined.isEmpty()) {
+                log.info("[STAGE: PATTERNS] No refinement available for project {}. Keeping local suggestions.", projectId);
+                return;
+            }
+            if (!projectService.refinePatternSuggestions(projectId, refined, requirements)) {
+                log.info("[STAGE: PATTERNS] Requirements of project {} changed meanwhile. Dropping stale refinement.", projectId);
+                return;
+            }
+            log.info("[STAGE: PATTERNS] Refined suggestions stored for project {}: {}", projectId, refined.keySet());
+        } catch (Exception e) {
+            log.error("[STAGE: PATTERNS] Refinement failed for project {}: {}", projectId, e.getMessage());
+        }
+    }
+
+    static boolean looksLikeCode(String text) {
+        return text.contains("{") || text.contains("import ") || text.contains("public class");
+    }
+
+    private static PatternDefinition definition(String name, String explanation, double prior,
+            List<String> phrases, List<String> signals) {
+        return new PatternDefinition(name, explanation, prior, phrases,
+                signals.stream().map(Pattern::compile).toList());
+    }
+
+    private record PatternDefinition(String name, String explanation, double prior,
+            List<String> phrases, List<Pattern> signals) {
+    }
+}
@@ -0,0 +1,107 @@
+package com.aiuml.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Dispatches Postgres {@code NOTIFY} messages to in-process handlers. LISTEN runs on its own connection,
+ * opened outside the pool so it never holds a pooled connection or trips its max lifetime, and is
+ * re-established after a database restart. Notifications sent while disconnected are lost, so handlers
+ * must tolerate gaps (callers poll as a fallback).
+ */
+@Service
+@Slf4j
+public class PgNotificationListener {
+    private static final int WAIT_MS = 1000;
+    private static final long RECONNECT_DELAY_MS = 5000;
+
+    private final Map<String, Consumer<String>> handlers = new ConcurrentHashMap<>();
+
+    @Value("${spring.datasource.url}")
+    private String url;
+
+    @Value("${spring.datasource.username}")
+    private String username;
+
+    @Value("${spring.datasource.password}")
+    private String password;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Registers the handler of a channel. Must be called before {@link #start()}; channel names are SQL
+     * identifiers. Handlers run on the listener thread and should return quickly.
+     */
+    public void subscribe(String channel, Consumer<String> handler) {
+        handlers.put(channel, handler);
+    }
+
+    public synchronized void start() {
+        if (thread != null)
+            return;
+        running = true;
+        thread = new Thread(this::listen, "pg-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        if (thread != null)
+            thread.interrupt();
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, username, password)) {
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    for (String channel : handlers.keySet())
+                        statement.execute("LISTEN " + channel);
+                }
+                log.info("[NOTIFY] Listening on {}.", handlers.keySet());
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(WAIT_MS);
+                    if (notifications == null)
+                        continue;
+                    for (PGNotification notification : notifications)
+                        dispatch(notification);
+                }
+            } catch (SQLException e) {
+                if (!running)
+                    return;
+                log.warn("[NOTIFY] Listener connection lost: {}. Reconnecting in {} ms.", e.getMessage(), RECONNECT_DELAY_MS);
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void dispatch(PGNotification notification) {
+        Consumer<String> handler = handlers.get(notification.getName());
+        if (handler == null)
+            return;
+        try {
+            handler.accept(notification.getParameter());
+        } catch (Exception e) {
+            log.error("[NOTIFY] Handler for {} failed: {}", notification.getName(), e.getMessage());
+        }
+    }
+}
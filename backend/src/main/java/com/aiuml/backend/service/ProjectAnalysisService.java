@@ -0,0 +1,149 @@
+package com.aiuml.backend.service;
+
+import com.aiuml.backend.dto.DiagramResult;
+import com.aiuml.backend.model.Diagram;
+import com.aiuml.backend.model.PatternSuggestion;
+import com.aiuml.backend.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs the analysis pipeline of a project (diagram, then patterns) on the bounded analysis pool, under
+ * an {@link AnalysisDeadline} that every stage and model attempt draws from.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ProjectAnalysisService {
+    public static final String REASON_DEADLINE = "deadline";
+    public static final String REASON_CLIENT_DISCONNECT = "client_disconnect";
+
+    private final ProjectService projectService;
+    private final AiAnalysisService aiService;
+    private final PatternDetectionService patternDetectionService;
+    private final RequirementsSimilarityIndex similarityIndex;
+    private final MeterRegistry meterRegistry;
+    private final UsageAggregator usageAggregator;
+
+    @Qualifier("analysisExecutor")
+    private final ThreadPoolTaskExecutor analysisExecutor;
+
+    @Value("${aiuml.analysis.default-budget-ms:90000}")
+    private long defaultBudgetMs;
+
+    @Value("${aiuml.analysis.max-budget-ms:300000}")
+    private long maxBudgetMs;
+
+    /**
+     * Deadline for a request: the client's budget when given (clamped to the configured maximum),
+     * otherwise the default budget.
+     */
+    public AnalysisDeadline newDeadline(Long requestedBudgetMs) {
+        long budget = requestedBudgetMs != null && requestedBudgetMs > 0 ? Math.min(requestedBudgetMs, maxBudgetMs) : defaultBudgetMs;
+        return AnalysisDeadline.after(Duration.ofMillis(budget));
+    }
+
+    /**
+     * Queues the analysis. Throws {@link java.util.concurrent.RejectedExecutionException} right away when the
+     * pool is saturated, so callers can shed load instead of queueing unboundedly.
+     */
+    public CompletableFuture<Map<String, Object>> submit(Long projectId, String requirements, String type,
+            boolean incremental, AnalysisDeadline deadline) {
+        return CompletableFuture.supplyAsync(() -> deadline.call(() -> {
+            try {
+                return analyze(projectId, requirements, type, incremental);
+            } catch (DeadlineExceededException e) {
+                cancel(deadline, REASON_DEADLINE);
+                throw e;
+            }
+        }), analysisExecutor);
+    }
+
+    public void cancel(AnalysisDeadline deadline, String reason) {
+        if (deadline.cancel(reason)) {
+            meterRegistry.counter("aiuml.analysis.cancelled", "reason", reason).increment();
+            log.warn("[DEADLINE] Analysis cancelled: {}", reason);
+        }
+    }
+
+    /**
+     * Runs the pipeline on the calling thread, billing its model usage to the project's owner.
+     */
+    public Map<String, Object> analyze(Long projectId, String requirements, String type, boolean incremental) {
+        User owner = projectService.getProject(projectId).getUser();
+        return UsageContext.call(owner != null ? owner.getId() : null, () -> {
+            usageAggregator.recordAnalysis();
+            return runPipeline(projectId, requirements, type, incremental);
+        });
+    }
+
+    /**
+     * Gives {@code projectId} the diagram and pattern suggestions just stored for {@code sourceProjectId},
+     * whose requirements are identical, without running the pipeline. Suggestions are copied as stored at
+     * that moment: {@code patternSource} tells whether the source's LLM refinement had already landed. When
+     * the source has no usable diagram (its generation failed), the source's response is returned unsaved.
+     */
+    public Map<String, Object> adopt(Long projectId, String requirements, String type, Long sourceProjectId,
+            Map<String, Object> sourceResponse) {
+        Map<String, Object> response = new LinkedHashMap<>(sourceResponse);
+        response.put("deduplicated", true);
+        Optional<Diagram> source = projectService.findDiagram(sourceProjectId, type)
+                .filter(d -> d.getDomainModel() != null && requirements.equals(d.getSourceRequirements()));
+        if (source.isEmpty())
+            return response;
+
+        projectService.saveDiagram(projectId, type,
+                new DiagramResult(source.get().getPlantUmlCode(), source.get().getDomainModel(), false), requirements);
+        List<PatternSuggestion> suggestions = projectService.getPatternSuggestions(sourceProjectId);
+        Map<String, String> patterns = new LinkedHashMap<>();
+        suggestions.forEach(p -> patterns.put(p.getName(), p.getExplanation()));
+        String patternSource = suggestions.isEmpty() ? "LOCAL" : suggestions.get(0).getSource();
+        projectService.savePatternSuggestions(projectId, patterns, patternSource, requirements);
+
+        response.put("plantUml", source.get().getPlantUmlCode());
+        response.put("patterns", patterns);
+        response.put("incremental", false);
+        response.put("patternSource", patternSource);
+        return response;
+    }
+
+    private Map<String, Object> runPipeline(Long projectId, String requirements, String type, boolean incremental) {
+        AnalysisDeadline deadline = AnalysisDeadline.current();
+        deadline.check(Duration.ZERO); // may have waited in the queue past its budget
+
+        Diagram previous = incremental ? projectService.findDiagram(projectId, type).orElse(null) : null;
+        Double similarity = null;
+        if (incremental && previous == null) {
+            // A near-identical submission elsewhere seeds the incremental path: reused as-is or patched
+            Optional<RequirementsSimilarityIndex.NearDuplicate> match = similarityIndex.findNearDuplicate(projectId, type, requirements);
+            if (match.isPresent()) {
+                previous = match.get().diagram();
+                similarity = match.get().similarity();
+            }
+        }
+        DiagramResult diagram = aiService.generateDiagram(requirements, type, previous);
+        if (diagram.getDomainModel() != null)
+            projectService.saveDiagram(projectId, type, diagram, requirements);
+        Map<String, String> patterns = patternDetectionService.suggestPatterns(projectId, requirements);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("plantUml", diagram.getCode());
+        response.put("patterns", patterns);
+        response.put("incremental", diagram.isIncremental());
+        if (similarity != null)
+            response.put("similarity", similarity);
+        return response;
+    }
+}
@@ -1,15 +1,36 @@
 package com.aiuml.backend.service;
 
+import com.aiuml.backend.dto.DiagramResult;
+import com.aiuml.backend.model.Diagram;
+import com.aiuml.backend.model.PatternSuggestion;
 import com.aiuml.backend.model.Project;
+import com.aiuml.backend.repository.DiagramRepository;
+import com.aiuml.backend.repository.PatternSuggestionRepository;
 import com.aiuml.backend.repository.ProjectRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
 public class ProjectService {
+    private static final int VERSION_BUMP_ATTEMPTS = 3;
+
     private final ProjectRepository projectRepository;
+    private final DiagramRepository diagramRepository;
+    private final PatternSuggestionRepository patternSuggestionRepository;
+    private final RequirementsSimilarityIndex similarityIndex;
+    private final DiagramHistoryService historyService;
+    private final TransactionTemplate transactionTemplate;
 
     public Project createProject(Project project) {
         return projectRepository.save(project);
@@ -19,12 +40,48 @@ public class ProjectService {
         return projectRepository.findByUserId(userId);
     }
 
+    public Page<ProjectRepository.SearchHit> searchProjects(Long userId, String query, int page, int size) {
+        PageRequest pageRequest = PageRequest.of(Math.max(0, page), Math.min(Math.max(1, size), 50));
+        if (query == null || query.isBlank())
+            return Page.empty(pageRequest);
+        List<ProjectRepository.SearchHit> hits = projectRepository.search(userId, query, pageRequest.getPageSize(),
+                pageRequest.getOffset());
+        long total = hits.size() < pageRequest.getPageSize() && page == 0 ? hits.size()
+                : projectRepository.countSearch(userId, query);
+        return new PageImpl<>(hits, pageRequest, total);
+    }
+
     public Project getProject(Long id) {
         return projectRepository.findById(id).orElseThrow(() -> new RuntimeException("Project not found"));
     }
 
-    public Project updateProject(Long id, Project projectDetails) {
+    /**
+     * Reads only the version column, so conditional GETs can be answered without loading the entity.
+     */
+    public Long getProjectVersion(Long id) {
+        return projectRepository.findVersionById(id).orElseThrow(() -> new RuntimeException("Project not found"));
+    }
+
+    /**
+     * Applies the non-null fields of {@code projectDetails}. When {@code expectedVersion} is given and the
+     * stored version differs, or a concurrent writer changes it before the update is flushed, the update is
+     * rejected with {@link StaleVersionException}. Without an expected version the last write wins: a
+     * concurrent version bump only makes the update re-read the project and apply again.
+     */
+    public Project updateProject(Long id, Project projectDetails, Long expectedVersion) {
+        if (expectedVersion == null)
+            return withVersionBump(() -> applyUpdate(id, projectDetails, null));
+        try {
+            return transactionTemplate.execute(status -> applyUpdate(id, projectDetails, expectedVersion));
+        } catch (OptimisticLockingFailureException e) {
+            throw new StaleVersionException(id);
+        }
+    }
+
+    private Project applyUpdate(Long id, Project projectDetails, Long expectedVersion) {
         Project project = getProject(id);
+        if (expectedVersion != null && !expectedVersion.equals(project.getVersion()))
+            throw new StaleVersionException(id);
         if (projectDetails.getName() != null)
             project.setName(projectDetails.getName());
         if (projectDetails.getDescription() != null)
@@ -34,6 +91,100 @@ public class ProjectService {
         return projectRepository.save(project);
     }
 
+    public Optional<Diagram> findDiagram(Long projectId, String type) {
+        return diagramRepository.findFirstByProjectIdAndTypeOrderByIdDesc(projectId, type.toUpperCase());
+    }
+
+    /**
+     * Stores the latest diagram of the given type together with the requirements and domain model that
+     * produced it, and appends it to the diagram's version history. The project's version is bumped so
+     * cached GETs pick up the new diagram.
+     */
+    public Diagram saveDiagram(Long projectId, String type, DiagramResult result, String requirements) {
+        return withVersionBump(() -> writeDiagram(projectId, type, result, requirements));
+    }
+
+    private Diagram writeDiagram(Long projectId, String type, DiagramResult result, String requirements) {
+        // Concurrent analyses of one project would otherwise read the same latest version and both insert the next
+        Project project = projectRepository.lockById(projectId)
+                .orElseThrow(() -> new RuntimeException("Project not found"));
+        Diagram diagram = findDiagram(projectId, type)
+                .orElseGet(() -> Diagram.builder().project(project).type(type.toUpperCase()).build());
+        diagram.setPlantUmlCode(result.getCode());
+        diagram.setDomainModel(result.getDomainModel());
+        diagram.setSourceRequirements(requirements);
+        diagram.setRequirementsFingerprint(similarityIndex.fingerprint(requirements));
+        Diagram saved = diagramRepository.save(diagram);
+        historyService.record(project, type, result.getCode());
+        similarityIndex.register(saved);
+        return saved;
+    }
+
+    public List<PatternSuggestion> getPatternSuggestions(Long projectId) {
+        return patternSuggestionRepository.findByProjectId(projectId);
+    }
+
+    /**
+     * Replaces the project's pattern suggestions, derived from {@code requirements}, and bumps its version,
+     * like {@link #saveDiagram}.
+     */
+    public List<PatternSuggestion> savePatternSuggestions(Long projectId, Map<String, String> patterns, String source,
+            String requirements) {
+        return withVersionBump(() -> {
+            Project project = projectRepository.findForUpdateById(projectId)
+                    .orElseThrow(() -> new RuntimeException("Project not found"));
+            return replacePatternSuggestions(project, patterns, source, requirements);
+        });
+    }
+
+    /**
+     * Replaces the suggestions with a refinement computed for {@code requirements}, unless the stored ones
+     * were meanwhile derived from different requirements by a newer analysis. Returns whether it was stored.
+     */
+    public boolean refinePatternSuggestions(Long projectId, Map<String, String> patterns, String requirements) {
+        return withVersionBump(() -> {
+            Project project = projectRepository.findForUpdateById(projectId)
+                    .orElseThrow(() -> new RuntimeException("Project not found"));
+            Integer hash = requirements.hashCode();
+            if (patternSuggestionRepository.findByProjectId(projectId).stream()
+                    .anyMatch(suggestion -> !hash.equals(suggestion.getRequirementsHash())))
+                return false;
+            replacePatternSuggestions(project, patterns, "LLM", requirements);
+            return true;
+        });
+    }
+
+    /**
+     * Runs {@code write} in its own transaction, re-reading and retrying when a concurrent writer bumped the
+     * project's version first. Internal bumps (diagrams, suggestions) must not fail just because a rename or
+     * another analysis of the same project committed in between. Joins the caller's transaction if there is
+     * one, in which case a conflict surfaces at the caller's commit instead.
+     */
+    private <T> T withVersionBump(Supplier<T> write) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> write.get());
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= VERSION_BUMP_ATTEMPTS)
+                    throw e;
+            }
+        }
+    }
+
+    private List<PatternSuggestion> replacePatternSuggestions(Project project, Map<String, String> patterns, String source,
+            String requirements) {
+        patternSuggestionRepository.deleteByProjectId(project.getId());
+        List<PatternSuggestion> suggestions = new ArrayList<>();
+        patterns.forEach((name, explanation) -> suggestions.add(PatternSuggestion.builder()
+                .project(project)
+                .name(name)
+                .explanation(explanation)
+                .source(source)
+                .requirementsHash(requirements != null ? requirements.hashCode() : null)
+                .build()));
+        return patternSuggestionRepository.saveAll(suggestions);
+    }
+
     public void deleteProject(Long id) {
         projectRepository.deleteById(id);
     }
@@ -0,0 +1,96 @@
+package com.aiuml.backend.service;
+
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * Paragraph-level difference between two versions of a requirements document.
+ * Paragraphs are compared after whitespace normalisation and as a multiset, so moving a paragraph
+ * around does not count as a change - ordering has no effect on the extracted domain model.
+ */
+@Getter
+public class RequirementsDiff {
+    private final List<String> added;
+    private final List<String> removed;
+    private final int changedChars;
+    private final int totalChars;
+
+    private RequirementsDiff(List<String> added, List<String> removed, int changedChars, int totalChars) {
+        this.added = added;
+        this.removed = removed;
+        this.changedChars = changedChars;
+        this.totalChars = totalChars;
+    }
+
+    public static RequirementsDiff between(String previous, String current) {
+        List<String> before = paragraphs(previous);
+        List<String> after = paragraphs(current);
+
+        Map<String, Integer> remaining = new HashMap<>();
+        for (String p : before)
+            remaining.merge(p, 1, Integer::sum);
+
+        List<String> added = new ArrayList<>();
+        for (String p : after) {
+            Integer count = remaining.get(p);
+            if (count == null) {
+                added.add(p);
+            } else if (count == 1) {
+                remaining.remove(p);
+            } else {
+                remaining.put(p, count - 1);
+            }
+        }
+
+        List<String> removed = new ArrayList<>();
+        for (String p : before) {
+            Integer count = remaining.get(p);
+            if (count != null) {
+                removed.add(p);
+                if (count == 1)
+                    remaining.remove(p);
+                else
+                    remaining.put(p, count - 1);
+            }
+        }
+
+        int changed = 0;
+        for (String p : added)
+            changed += p.length();
+        for (String p : removed)
+            changed += p.length();
+        int total = Math.max(1, length(before) + length(after));
+        return new RequirementsDiff(added, removed, changed, total);
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * Share of both documents touched by the change, between 0 (identical) and 1 (rewritten).
+     */
+    public double getChangedRatio() {
+        return (double) changedChars / totalChars;
+    }
+
+    static List<String> paragraphs(String text) {
+        List<String> result = new ArrayList<>();
+        if (text == null)
+            return result;
+        for (String block : text.split("\\r?\\n\\s*\\r?\\n")) {
+            String normalized = block.trim().replaceAll("\\s+", " ");
+            if (!normalized.isEmpty())
+                result.add(normalized);
+        }
+        return result;
+    }
+
+    private static int length(List<String> paragraphs) {
+        int sum = 0;
+        for (String p : paragraphs)
+            sum += p.length();
+        return sum;
+    }
+}
@@ -0,0 +1,221 @@
+package com.aiuml.backend.service;
+
+import com.aiuml.backend.model.Diagram;
+import com.aiuml.backend.repository.DiagramRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory near-duplicate index over the requirements behind stored diagrams, backed by the fingerprint
+ * column on {@link Diagram} and rebuilt from it at startup.
+ * <p>
+ * Fingerprints are split into {@code ceil((maxDistance + 1) / 2)} bands. Two fingerprints within the allowed
+ * Hamming distance then differ in at most one bit on at least one band, so a lookup probes each band's bucket
+ * and the buckets one bit away, and compares only the entries found there. At the default threshold (distance
+ * 9) that is 5 bands of 12-13 bits: about 70 probes and, for 100k fingerprints of one type spread uniformly,
+ * roughly 1k Hamming distances instead of the 12k that exact matching on 10 bands of 6-7 bits would cost.
+ * Buckets are kept per diagram type, so no comparison is spent on another type.
+ * <p>
+ * Saves register their fingerprint only once their transaction commits, so a rollback leaves no entry behind.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class RequirementsSimilarityIndex {
+    private static final int MIN_TOKENS = 20; // fingerprints of very short texts are too noisy to trust
+
+    private final DiagramRepository diagramRepository;
+
+    @Value("${aiuml.similarity.enabled:true}")
+    private boolean enabled;
+
+    @Value("${aiuml.similarity.threshold:0.85}")
+    private double threshold;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> entriesByDiagram = new HashMap<>();
+    private final Map<String, Map<Long, List<Entry>>> bucketsByType = new HashMap<>();
+    private int[] bandOffsets;
+
+    public record NearDuplicate(Diagram diagram, double similarity) {
+    }
+
+    private record Entry(long diagramId, long projectId, String type, long fingerprint) {
+    }
+
+    @PostConstruct
+    void initBands() {
+        // Capped at 16 bands; thresholds below ~0.52 may then miss some matches within the distance
+        int count = Math.min(16, Math.max(1, (maxDistance() + 2) / 2));
+        bandOffsets = new int[count + 1];
+        for (int band = 0; band <= count; band++)
+            bandOffsets[band] = band * 64 / count;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0) // before listeners that query the index, such as the template warm-up
+    public void load() {
+        if (!enabled)
+            return;
+        long start = System.currentTimeMillis();
+        List<DiagramRepository.FingerprintView> rows = diagramRepository.findAllFingerprints();
+        lock.writeLock().lock();
+        try {
+            for (DiagramRepository.FingerprintView row : rows)
+                put(new Entry(row.getId(), row.getProjectId(), row.getType().toUpperCase(), row.getFingerprint()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("[SIMILARITY] Indexed {} diagram fingerprint(s) in {} ms.", rows.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Fingerprint to store with a diagram, or null when the text is too short to be indexed.
+     */
+    public Long fingerprint(String requirements) {
+        String[] tokens = SimHash.tokenize(requirements);
+        return tokens.length < MIN_TOKENS ? null : SimHash.fingerprint(tokens);
+    }
+
+    /**
+     * Indexes a saved diagram. Inside a transaction the entry is added only after it commits.
+     */
+    public void register(Diagram diagram) {
+        if (!enabled || diagram.getRequirementsFingerprint() == null)
+            return;
+        Entry entry = new Entry(diagram.getId(), diagram.getProject().getId(), diagram.getType().toUpperCase(),
+                diagram.getRequirementsFingerprint());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(entry);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                add(entry);
+            }
+        });
+    }
+
+    private void add(Entry entry) {
+        lock.writeLock().lock();
+        try {
+            put(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the stored diagram of the same type, from another project, whose requirements are most similar
+     * to {@code requirements}, provided the similarity reaches the configured threshold.
+     */
+    public Optional<NearDuplicate> findNearDuplicate(Long projectId, String type, String requirements) {
+        if (!enabled)
+            return Optional.empty();
+        Long fingerprint = fingerprint(requirements);
+        if (fingerprint == null)
+            return Optional.empty();
+
+        long start = System.nanoTime();
+        Entry best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        lock.readLock().lock();
+        try {
+            Map<Long, List<Entry>> buckets = bucketsByType.getOrDefault(type.toUpperCase(), Map.of());
+            for (int band = 0; band < bands(); band++) {
+                long key = bandKey(band, fingerprint);
+                // The band itself, then every key one bit away from it
+                for (int flip = -1; flip < bandWidth(band); flip++) {
+                    List<Entry> bucket = buckets.get(flip < 0 ? key : key ^ (1L << flip));
+                    if (bucket == null)
+                        continue;
+                    for (Entry entry : bucket) {
+                        if (entry.projectId() == projectId)
+                            continue;
+                        int distance = Long.bitCount(entry.fingerprint() ^ fingerprint);
+                        if (distance < bestDistance) {
+                            best = entry;
+                            bestDistance = distance;
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        log.debug("[SIMILARITY] Lookup took {} us.", (System.nanoTime() - start) / 1000);
+
+        if (best == null || bestDistance > maxDistance())
+            return Optional.empty();
+        double similarity = SimHash.similarity(best.fingerprint(), fingerprint);
+        log.info("[SIMILARITY] Project {} matches diagram {} at {}% similarity.", projectId, best.diagramId(),
+                Math.round(similarity * 100));
+        Optional<Diagram> diagram = diagramRepository.findById(best.diagramId());
+        if (diagram.isEmpty()) {
+            // Project deleted since indexing; drop the entry so it stops shadowing other matches
+            lock.writeLock().lock();
+            try {
+                remove(best.diagramId());
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return Optional.empty();
+        }
+        return Optional.of(new NearDuplicate(diagram.get(), similarity));
+    }
+
+    // Callers of put/remove hold the write lock
+    private void put(Entry entry) {
+        remove(entry.diagramId());
+        entriesByDiagram.put(entry.diagramId(), entry);
+        Map<Long, List<Entry>> buckets = bucketsByType.computeIfAbsent(entry.type(), k -> new HashMap<>());
+        for (int band = 0; band < bands(); band++)
+            buckets.computeIfAbsent(bandKey(band, entry.fingerprint()), k -> new ArrayList<>()).add(entry);
+    }
+
+    private void remove(long diagramId) {
+        Entry old = entriesByDiagram.remove(diagramId);
+        if (old == null)
+            return;
+        Map<Long, List<Entry>> buckets = bucketsByType.get(old.type());
+        for (int band = 0; band < bands(); band++) {
+            List<Entry> bucket = buckets.get(bandKey(band, old.fingerprint()));
+            if (bucket != null)
+                bucket.remove(old);
+        }
+    }
+
+    private int maxDistance() {
+        return (int) Math.floor((1.0 - threshold) * 64);
+    }
+
+    private int bands() {
+        return bandOffsets.length - 1;
+    }
+
+    private int bandWidth(int band) {
+        return bandOffsets[band + 1] - bandOffsets[band];
+    }
+
+    // With several bands each is at most 32 bits wide and the band number sits above them; a single band is the whole fingerprint
+    private long bandKey(int band, long fingerprint) {
+        int width = bandWidth(band);
+        if (width == 64)
+            return fingerprint;
+        long bits = (fingerprint >>> bandOffsets[band]) & ((1L << width) - 1);
+        return ((long) band << 32) | bits;
+    }
+}
@@ -0,0 +1,56 @@
+package com.aiuml.backend.service;
+
+/**
+ * 64-bit SimHash over word 3-shingles. Texts that differ by a few edits get fingerprints that differ in
+ * only a few bits, so similarity is estimated from the Hamming distance between two longs.
+ */
+public final class SimHash {
+    private static final int SHINGLE_SIZE = 3;
+
+    private SimHash() {
+    }
+
+    public static long fingerprint(String[] tokens) {
+        int[] weights = new int[64];
+        int shingles = Math.max(1, tokens.length - SHINGLE_SIZE + 1);
+        for (int i = 0; i < shingles; i++) {
+            long hash = 0xcbf29ce484222325L; // FNV-1a offset basis
+            for (int j = i; j < Math.min(tokens.length, i + SHINGLE_SIZE); j++) {
+                String token = tokens[j];
+                for (int k = 0; k < token.length(); k++) {
+                    hash ^= token.charAt(k);
+                    hash *= 0x100000001b3L;
+                }
+                hash ^= ' ';
+                hash *= 0x100000001b3L;
+            }
+            hash = mix(hash);
+            for (int bit = 0; bit < 64; bit++)
+                weights[bit] += ((hash >>> bit) & 1) == 1 ? 1 : -1;
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0)
+                fingerprint |= 1L << bit;
+        }
+        return fingerprint;
+    }
+
+    public static String[] tokenize(String text) {
+        if (text == null)
+            return new String[0];
+        String normalized = text.toLowerCase().replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+        return normalized.isEmpty() ? new String[0] : normalized.split(" ");
+    }
+
+    public static double similarity(long a, long b) {
+        return 1.0 - Long.bitCount(a ^ b) / 64.0;
+    }
+
+    // splitmix64 finaliser: spreads FNV output evenly over all 64 bits
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
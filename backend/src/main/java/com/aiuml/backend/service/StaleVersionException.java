@@ -0,0 +1,10 @@
+package com.aiuml.backend.service;
+
+/**
+ * Thrown when a conditional update names a project version that is no longer current.
+ */
+public class StaleVersionException extends RuntimeException {
+    public StaleVersionException(Long projectId) {
+        super("Project " + projectId + " was modified concurrently");
+    }
+}
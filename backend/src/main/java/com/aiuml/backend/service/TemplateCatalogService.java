@@ -0,0 +1,172 @@
+package com.aiuml.backend.service;
+
+import com.aiuml.backend.dto.DiagramResult;
+import com.aiuml.backend.dto.ProjectTemplate;
+import com.aiuml.backend.model.Project;
+import com.aiuml.backend.repository.UserRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Catalog of project templates with their diagram and pattern suggestions prepared ahead of time, so a
+ * project started from a template shows its diagram at once without calling the model.
+ * <p>
+ * Templates come from {@code project-templates.json}. Those shipped without a diagram are prepared by a
+ * warm-up job at startup, which first looks for a stored diagram generated from the same text (any earlier
+ * project created from the template) and only calls the model when there is none.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TemplateCatalogService {
+    private static final String CATALOG = "project-templates.json";
+
+    private final ObjectMapper objectMapper;
+    private final AiAnalysisService aiService;
+    private final PatternDetectionService patternDetectionService;
+    private final ProjectService projectService;
+    private final RequirementsSimilarityIndex similarityIndex;
+    private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Qualifier("analysisExecutor")
+    private final ThreadPoolTaskExecutor analysisExecutor;
+
+    @Value("${aiuml.templates.warm-up:true}")
+    private boolean warmUp;
+
+    @Value("${aiuml.analysis.default-budget-ms:90000}")
+    private long budgetMs;
+
+    private final Map<String, ProjectTemplate> templates = new LinkedHashMap<>();
+    private final Map<String, PreparedTemplate> prepared = new ConcurrentHashMap<>();
+
+    private record PreparedTemplate(DiagramResult diagram, Map<String, String> patterns) {
+    }
+
+    @PostConstruct
+    void load() throws IOException {
+        try (InputStream in = new ClassPathResource(CATALOG).getInputStream()) {
+            for (ProjectTemplate template : objectMapper.readValue(in, new TypeReference<List<ProjectTemplate>>() {
+            })) {
+                templates.put(template.getId(), template);
+                if (template.getPlantUml() != null && template.getDomainModel() != null)
+                    prepared.put(template.getId(), new PreparedTemplate(
+                            new DiagramResult(template.getPlantUml(), template.getDomainModel(), false), patternsOf(template)));
+            }
+        }
+        log.info("[TEMPLATES] Loaded {} template(s), {} precomputed.", templates.size(), prepared.size());
+    }
+
+    // After the similarity index is loaded, which the warm-up consults first
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void startWarmUp() {
+        if (!warmUp || prepared.size() == templates.size())
+            return;
+        try {
+            analysisExecutor.execute(this::prepareAll);
+        } catch (RejectedExecutionException e) {
+            log.warn("[TEMPLATES] Analysis pool busy. Templates will be analyzed on demand.");
+        }
+    }
+
+    private void prepareAll() {
+        for (ProjectTemplate template : templates.values()) {
+            if (prepared.containsKey(template.getId()))
+                continue;
+            try {
+                prepare(template);
+            } catch (Exception e) {
+                log.error("[TEMPLATES] Could not prepare template {}: {}", template.getId(), e.getMessage());
+            }
+        }
+        log.info("[TEMPLATES] Warm-up finished. {}/{} template(s) ready.", prepared.size(), templates.size());
+    }
+
+    private void prepare(ProjectTemplate template) {
+        DiagramResult diagram = stored(template).orElse(null);
+        if (diagram == null) {
+            log.info("[TEMPLATES] Generating diagram for template {}.", template.getId());
+            diagram = AnalysisDeadline.after(Duration.ofMillis(budgetMs))
+                    .call(() -> aiService.generateDiagram(template.getRequirements(), template.getType(), null));
+            if (diagram.getDomainModel() == null)
+                return; // generation failed; projects from this template are analyzed normally
+        }
+        prepared.put(template.getId(), new PreparedTemplate(diagram, patternsOf(template)));
+    }
+
+    private Optional<DiagramResult> stored(ProjectTemplate template) {
+        return similarityIndex.findNearDuplicate(-1L, template.getType(), template.getRequirements())
+                .map(RequirementsSimilarityIndex.NearDuplicate::diagram)
+                .filter(d -> template.getRequirements().equals(d.getSourceRequirements()) && d.getDomainModel() != null)
+                .map(d -> new DiagramResult(d.getPlantUmlCode(), d.getDomainModel(), false));
+    }
+
+    private Map<String, String> patternsOf(ProjectTemplate template) {
+        return template.getPatterns() != null ? template.getPatterns() : patternDetectionService.detect(template.getRequirements());
+    }
+
+    public List<Map<String, Object>> list() {
+        List<Map<String, Object>> summaries = new ArrayList<>();
+        for (ProjectTemplate template : templates.values())
+            summaries.add(Map.of(
+                    "id", template.getId(),
+                    "name", template.getName(),
+                    "description", template.getDescription(),
+                    "type", template.getType(),
+                    "ready", prepared.containsKey(template.getId())));
+        return summaries;
+    }
+
+    /**
+     * Creates a project for {@code userId} from the template. When the template is prepared, its diagram and
+     * pattern suggestions are stored with the project; otherwise the project only carries the requirements
+     * and is analyzed like any other.
+     */
+    @Transactional
+    public Project createProject(String templateId, Long userId) {
+        ProjectTemplate template = templates.get(templateId);
+        if (template == null)
+            throw new IllegalArgumentException("Unknown template: " + templateId);
+        Project project = projectService.createProject(Project.builder()
+                .name(template.getName())
+                .description(template.getDescription())
+                .requirements(template.getRequirements())
+                .user(userRepository.getReferenceById(userId))
+                .build());
+
+        PreparedTemplate ready = prepared.get(templateId);
+        meterRegistry.counter("aiuml.templates.projects", "prepared", String.valueOf(ready != null)).increment();
+        if (ready == null) {
+            log.info("[TEMPLATES] Template {} not prepared yet. Project {} will be analyzed on demand.", templateId, project.getId());
+            return project;
+        }
+        projectService.saveDiagram(project.getId(), template.getType(), ready.diagram(), template.getRequirements());
+        projectService.savePatternSuggestions(project.getId(), ready.patterns(), "TEMPLATE",
+                template.getRequirements());
+        log.info("[TEMPLATES] Project {} created from template {} with its prepared diagram.", project.getId(), templateId);
+        return project;
+    }
+}
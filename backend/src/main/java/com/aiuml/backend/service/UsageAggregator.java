@@ -0,0 +1,197 @@
+package com.aiuml.backend.service;
+
+import com.aiuml.backend.dto.ModelUsage;
+import com.aiuml.backend.model.UsageTotal;
+import com.aiuml.backend.repository.UsageTotalRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Per-user, per-model usage counters kept in memory and written behind to {@code usage_totals}.
+ * <p>
+ * Recording is a map lookup plus {@link LongAdder} increments, so concurrent analyses never contend on a
+ * lock or wait on the database. Counters are never reset: each flush upserts the delta since the previous
+ * successful flush, so increments racing with a flush land in the next one, and a failed flush is simply
+ * retried. Upserts are additive, so every node can flush into the same rows. Entries with nothing left to
+ * flush are dropped, so the map only holds users active since the previous flush; recorders count themselves
+ * in and out (two more adder increments) so that a dropped entry is written once more only after its last
+ * increment.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class UsageAggregator {
+    public static final String ANY_MODEL = "*";
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO usage_totals (user_id, model, analyses, calls, failed_calls, prompt_tokens, output_tokens, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, now())
+            ON CONFLICT (user_id, model) DO UPDATE SET
+                analyses = usage_totals.analyses + EXCLUDED.analyses,
+                calls = usage_totals.calls + EXCLUDED.calls,
+                failed_calls = usage_totals.failed_calls + EXCLUDED.failed_calls,
+                prompt_tokens = usage_totals.prompt_tokens + EXCLUDED.prompt_tokens,
+                output_tokens = usage_totals.output_tokens + EXCLUDED.output_tokens,
+                updated_at = now()""";
+
+    private final UsageTotalRepository usageRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Key, Counters> counters = new ConcurrentHashMap<>();
+    // Entries removed by the previous flush, written once more with anything recorded into them before removal
+    private Map<Key, Counters> retired = Map.of();
+    // Recorders register in the current phase, so a flush can wait until none still holds an entry it removed
+    private final LongAdder[] entered = { new LongAdder(), new LongAdder() };
+    private final LongAdder[] exited = { new LongAdder(), new LongAdder() };
+    private volatile int phase;
+
+    private record Key(long userId, String model) {
+    }
+
+    private static final class Counters {
+        final LongAdder analyses = new LongAdder();
+        final LongAdder calls = new LongAdder();
+        final LongAdder failedCalls = new LongAdder();
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder outputTokens = new LongAdder();
+        // Totals already written to the database; only touched by the flushing thread
+        ModelUsage flushed;
+
+        ModelUsage snapshot(String model) {
+            return new ModelUsage(model, analyses.sum(), calls.sum(), failedCalls.sum(), promptTokens.sum(), outputTokens.sum());
+        }
+    }
+
+    public void recordAnalysis() {
+        record(ANY_MODEL, usage -> usage.analyses.increment());
+    }
+
+    public void recordCall(String model, boolean succeeded, long promptTokens, long outputTokens) {
+        record(model, usage -> {
+            usage.calls.increment();
+            if (!succeeded)
+                usage.failedCalls.increment();
+            if (promptTokens > 0)
+                usage.promptTokens.add(promptTokens);
+            if (outputTokens > 0)
+                usage.outputTokens.add(outputTokens);
+        });
+    }
+
+    // Work outside any user (e.g. template warm-up) is not attributed
+    private void record(String model, Consumer<Counters> update) {
+        Long userId = UsageContext.currentUser();
+        if (userId == null)
+            return;
+        int current;
+        while (true) {
+            current = phase;
+            entered[current].increment();
+            if (phase == current)
+                break;
+            exited[current].increment();
+        }
+        try {
+            Key key = new Key(userId, model);
+            Counters usage = counters.get(key);
+            update.accept(usage != null ? usage : counters.computeIfAbsent(key, k -> new Counters()));
+        } finally {
+            exited[current].increment();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${aiuml.usage.flush-interval-ms:10000}")
+    @PreDestroy
+    public synchronized void flush() {
+        List<Object[]> batch = new ArrayList<>();
+        List<Counters> flushed = new ArrayList<>();
+        List<ModelUsage> snapshots = new ArrayList<>();
+        Map<Key, Counters> idle = new HashMap<>();
+        BiConsumer<Key, Counters> collect = (key, usage) -> {
+            ModelUsage current = usage.snapshot(key.model());
+            ModelUsage delta = delta(current, usage.flushed);
+            if (delta.getAnalyses() + delta.getCalls() == 0) {
+                idle.put(key, usage);
+                return;
+            }
+            batch.add(new Object[] { key.userId(), key.model(), delta.getAnalyses(), delta.getCalls(), delta.getFailedCalls(),
+                    delta.getPromptTokens(), delta.getOutputTokens() });
+            flushed.add(usage);
+            snapshots.add(current);
+        };
+        counters.forEach(collect);
+        retired.forEach(collect);
+        if (!batch.isEmpty()) {
+            try {
+                jdbcTemplate.batchUpdate(UPSERT_SQL, batch);
+            } catch (Exception e) {
+                log.warn("[USAGE] Flush of {} row(s) failed, retrying next interval: {}", batch.size(), e.getMessage());
+                return;
+            }
+            for (int i = 0; i < flushed.size(); i++)
+                flushed.get(i).flushed = snapshots.get(i);
+            log.debug("[USAGE] Flushed {} usage row(s).", batch.size());
+        }
+        idle.entrySet().removeIf(entry -> !counters.remove(entry.getKey(), entry.getValue()));
+        if (!idle.isEmpty())
+            awaitRecorders();
+        // Increments that raced with the removal are in these entries now, and none can follow
+        retired = idle;
+    }
+
+    /**
+     * Waits until every recorder that may have looked up an entry before the last removal has finished. Later
+     * recorders register in the new phase and find a fresh entry.
+     */
+    private void awaitRecorders() {
+        int previous = phase;
+        phase = 1 - previous;
+        // Exits are read first: both only grow, so equal sums mean nobody was still inside
+        while (exited[previous].sum() != entered[previous].sum())
+            Thread.yield();
+    }
+
+    /**
+     * Stored totals of the user per model plus what this node has not flushed yet.
+     */
+    public synchronized List<ModelUsage> usageOf(Long userId) {
+        Map<String, ModelUsage> byModel = new TreeMap<>();
+        for (UsageTotal row : usageRepository.findByUserIdOrderByModel(userId))
+            byModel.put(row.getModel(), new ModelUsage(row.getModel(), row.getAnalyses(), row.getCalls(), row.getFailedCalls(),
+                    row.getPromptTokens(), row.getOutputTokens()));
+        BiConsumer<Key, Counters> addPending = (key, usage) -> {
+            if (key.userId() != userId)
+                return;
+            ModelUsage pending = delta(usage.snapshot(key.model()), usage.flushed);
+            byModel.merge(key.model(), pending, (stored, unflushed) -> {
+                stored.add(unflushed);
+                return stored;
+            });
+        };
+        counters.forEach(addPending);
+        retired.forEach(addPending);
+        return new ArrayList<>(byModel.values());
+    }
+
+    private static ModelUsage delta(ModelUsage current, ModelUsage flushed) {
+        if (flushed == null)
+            return current;
+        return new ModelUsage(current.getModel(), current.getAnalyses() - flushed.getAnalyses(),
+                current.getCalls() - flushed.getCalls(), current.getFailedCalls() - flushed.getFailedCalls(),
+                current.getPromptTokens() - flushed.getPromptTokens(), current.getOutputTokens() - flushed.getOutputTokens());
+    }
+}
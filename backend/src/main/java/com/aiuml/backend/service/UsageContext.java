@@ -0,0 +1,44 @@
+package com.aiuml.backend.service;
+
+import java.util.function.Supplier;
+
+/**
+ * The user that model calls on this thread are billed to, set around each analysis.
+ */
+public final class UsageContext {
+    private static final ThreadLocal<Long> CURRENT = new ThreadLocal<>();
+
+    private UsageContext() {
+    }
+
+    /**
+     * The user of the analysis running on this thread, or null outside any attributed work.
+     */
+    public static Long currentUser() {
+        return CURRENT.get();
+    }
+
+    public static <T> T call(Long userId, Supplier<T> work) {
+        Long previous = CURRENT.get();
+        CURRENT.set(userId);
+        try {
+            return work.get();
+        } finally {
+            if (previous != null)
+                CURRENT.set(previous);
+            else
+                CURRENT.remove();
+        }
+    }
+
+    /**
+     * Binds the current user to {@code task}, for work handed to another thread.
+     */
+    public static Runnable wrap(Runnable task) {
+        Long userId = CURRENT.get();
+        return () -> call(userId, () -> {
+            task.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,43 @@
+-- Runs after Hibernate's schema update (spring.jpa.defer-datasource-initialization=true); every statement is idempotent.
+-- Function bodies are single-quoted rather than $$-quoted because the script is split on semicolons.
+
+-- Full-text search over projects. A trigger maintains the vector only when an indexed column changes, so
+-- version bumps and other updates of the row do not re-tokenize the requirements. Only a bounded prefix of
+-- the requirements is indexed: to_tsvector fails above 1MB, and that must never make a project save fail.
+ALTER TABLE projects ADD COLUMN IF NOT EXISTS search_vector tsvector;
+-- Earlier releases declared the column GENERATED; turn it into a plain column the trigger can write
+ALTER TABLE projects ALTER COLUMN search_vector DROP EXPRESSION IF EXISTS;
+
+CREATE OR REPLACE FUNCTION projects_search_vector(name text, description text, requirements text) RETURNS tsvector
+LANGUAGE sql IMMUTABLE AS '
+    SELECT setweight(to_tsvector(''english''::regconfig, coalesce(name, '''')), ''A'') ||
+           setweight(to_tsvector(''english''::regconfig, coalesce(description, '''')), ''B'') ||
+           setweight(to_tsvector(''english''::regconfig, left(coalesce(requirements, ''''), 100000)), ''C'')
+';
+
+CREATE OR REPLACE FUNCTION projects_search_vector_update() RETURNS trigger
+LANGUAGE plpgsql AS '
+BEGIN
+    NEW.search_vector := projects_search_vector(NEW.name, NEW.description, NEW.requirements);
+    RETURN NEW;
+END
+';
+
+-- Hibernate writes every column on update, so the update trigger compares values instead of relying on UPDATE OF
+DROP TRIGGER IF EXISTS trg_projects_search_vector_insert ON projects;
+CREATE TRIGGER trg_projects_search_vector_insert
+    BEFORE INSERT ON projects
+    FOR EACH ROW EXECUTE FUNCTION projects_search_vector_update();
+DROP TRIGGER IF EXISTS trg_projects_search_vector_update ON projects;
+CREATE TRIGGER trg_projects_search_vector_update
+    BEFORE UPDATE ON projects
+    FOR EACH ROW
+    WHEN (OLD.name IS DISTINCT FROM NEW.name OR OLD.description IS DISTINCT FROM NEW.description
+          OR OLD.requirements IS DISTINCT FROM NEW.requirements)
+    EXECUTE FUNCTION projects_search_vector_update();
+
+-- Rows written before the trigger existed
+UPDATE projects SET search_vector = projects_search_vector(name, description, requirements) WHERE search_vector IS NULL;
+
+CREATE INDEX IF NOT EXISTS idx_projects_search_vector ON projects USING GIN (search_vector);
+CREATE INDEX IF NOT EXISTS idx_projects_user_id ON projects (user_id);
@@ -0,0 +1,29 @@
+package com.aiuml.backend.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProjectControllerTest {
+
+    @Test
+    void eTagRoundTrips() {
+        assertEquals("\"7\"", ProjectController.toETag(7L));
+        assertEquals("\"0\"", ProjectController.toETag(null));
+        assertEquals(7L, ProjectController.fromETag(ProjectController.toETag(7L)));
+    }
+
+    @Test
+    void acceptsWeakAndUnquotedValues() {
+        assertEquals(12L, ProjectController.fromETag("W/\"12\""));
+        assertEquals(12L, ProjectController.fromETag(" 12 "));
+    }
+
+    @Test
+    void unusableValuesDisableTheVersionCheck() {
+        assertNull(ProjectController.fromETag(null));
+        assertNull(ProjectController.fromETag("  "));
+        assertNull(ProjectController.fromETag("*"));
+        assertNull(ProjectController.fromETag("\"abc\""));
+    }
+}
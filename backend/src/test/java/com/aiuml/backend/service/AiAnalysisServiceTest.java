@@ -0,0 +1,94 @@
+package com.aiuml.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The pure parts of incremental regeneration: applying the model's anchored patches and validating the result.
+ */
+class AiAnalysisServiceTest {
+    private static final String CLASS_DIAGRAM = String.join("\n",
+            "classDiagram",
+            "  class Order {",
+            "    +String id",
+            "  }",
+            "  class Customer {",
+            "    +String name",
+            "  }",
+            "  Customer --> Order");
+
+    private static final String SEQUENCE_DIAGRAM = String.join("\n",
+            "sequenceDiagram",
+            "  participant A",
+            "  participant B",
+            "  loop Every minute",
+            "    A->>B: ping",
+            "  end");
+
+    @Test
+    void insertsUnderTheAnchorWithTheIndentationOfTheBlock() {
+        String patched = AiAnalysisService.applyPatch(CLASS_DIAGRAM, List.of("@@ class Order {", "+ +Date createdAt"), true);
+
+        assertEquals(String.join("\n",
+                "classDiagram",
+                "  class Order {",
+                "    +Date createdAt",
+                "    +String id",
+                "  }",
+                "  class Customer {",
+                "    +String name",
+                "  }",
+                "  Customer --> Order"), patched);
+    }
+
+    @Test
+    void replacesALineInPlace() {
+        String patched = AiAnalysisService.applyPatch(CLASS_DIAGRAM,
+                List.of("@@ Customer --> Order", "- Customer --> Order", "+ Customer \"1\" --> \"*\" Order"), true);
+
+        assertEquals(CLASS_DIAGRAM.replace("  Customer --> Order", "  Customer \"1\" --> \"*\" Order"), patched);
+    }
+
+    @Test
+    void inversePatchRestoresTheOriginal() {
+        String added = AiAnalysisService.applyPatch(CLASS_DIAGRAM,
+                List.of("@@ class Customer {", "+ +String email", "@@ Customer --> Order", "+ Order --> Invoice"), true);
+        String restored = AiAnalysisService.applyPatch(added,
+                List.of("@@ class Customer {", "- +String email", "@@ Order --> Invoice", "- Order --> Invoice"), true);
+
+        assertNotEquals(CLASS_DIAGRAM, added);
+        assertEquals(CLASS_DIAGRAM, restored);
+        assertTrue(AiAnalysisService.isWellFormed(CLASS_DIAGRAM, added));
+    }
+
+    @Test
+    void rejectsPatchesThatDoNotApply() {
+        // Unknown anchor, unknown removed line, diagram addition without an anchor, dropping the header
+        assertNull(AiAnalysisService.applyPatch(CLASS_DIAGRAM, List.of("@@ class Invoice {", "+ +int total"), true));
+        assertNull(AiAnalysisService.applyPatch(CLASS_DIAGRAM, List.of("@@ class Order {", "- +int total"), true));
+        assertNull(AiAnalysisService.applyPatch(CLASS_DIAGRAM, List.of("+ class Invoice"), true));
+        assertNull(AiAnalysisService.applyPatch(CLASS_DIAGRAM, List.of("- classDiagram"), true));
+    }
+
+    @Test
+    void domainModelAdditionsWithoutAnAnchorAreAppended() {
+        String patched = AiAnalysisService.applyPatch("Order\nCustomer", List.of("+ Invoice"), false);
+
+        assertEquals("Order\nCustomer\nInvoice", patched);
+    }
+
+    @Test
+    void wellFormedKeepsHeaderBracesAndBlocks() {
+        assertTrue(AiAnalysisService.isWellFormed(CLASS_DIAGRAM, CLASS_DIAGRAM));
+        assertFalse(AiAnalysisService.isWellFormed(CLASS_DIAGRAM, CLASS_DIAGRAM.replace("classDiagram", "graph TD")));
+        assertFalse(AiAnalysisService.isWellFormed(CLASS_DIAGRAM, CLASS_DIAGRAM.replaceFirst("\n  }", "")));
+        assertFalse(AiAnalysisService.isWellFormed(CLASS_DIAGRAM, CLASS_DIAGRAM + "\n  }"));
+
+        assertFalse(AiAnalysisService.isWellFormed(SEQUENCE_DIAGRAM, SEQUENCE_DIAGRAM.replace("\n  end", "")));
+        assertTrue(AiAnalysisService.isWellFormed(SEQUENCE_DIAGRAM,
+                SEQUENCE_DIAGRAM + "\n  alt reachable\n    B->>A: pong\n  end"));
+    }
+}
@@ -0,0 +1,44 @@
+package com.aiuml.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeywordMatcherTest {
+    private static final List<String> PHRASES = List.of("state", "observer", "orchestrat*", "event bus", "bus");
+    private final KeywordMatcher matcher = new KeywordMatcher(PHRASES);
+
+    @Test
+    void matchesWholeWordsAndPlurals() {
+        assertEquals(List.of("state"), matches("Each order has a state."));
+        assertEquals(List.of("state", "observer"), matches("States are pushed to Observers"));
+        assertEquals(List.of(), matches("restate the statement, unobserved"));
+    }
+
+    @Test
+    void stemsMatchAnyEnding() {
+        assertEquals(List.of("orchestrat*", "orchestrat*"), matches("An orchestrator drives the orchestration."));
+        assertEquals(List.of(), matches("reorchestrate"));
+    }
+
+    @Test
+    void findsOverlappingPhrasesCaseInsensitively() {
+        assertEquals(List.of("event bus", "bus"), matches("Services publish on the Event Bus"));
+        assertEquals(List.of("bus"), matches("a bus, not an eventbus"));
+    }
+
+    @Test
+    void reportsEveryOccurrence() {
+        assertEquals(List.of("state", "state", "state"), matches("state; STATE (state)"));
+        assertEquals(List.of(), matches(""));
+    }
+
+    private List<String> matches(String text) {
+        List<String> found = new ArrayList<>();
+        matcher.match(text, phrase -> found.add(PHRASES.get(phrase)));
+        return found;
+    }
+}
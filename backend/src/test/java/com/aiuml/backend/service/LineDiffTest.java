@@ -0,0 +1,106 @@
+package com.aiuml.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineDiffTest {
+
+    @Test
+    void encodesRunsAndInsertedLines() {
+        String before = "classDiagram\n  class A\n  class B\n  class C\n  A --> B";
+        String after = "classDiagram\n  class A\n  class C\n  class D\n  A --> B";
+
+        String script = delta(before, after);
+
+        assertEquals("=2\n-1\n=1\n+  class D\n=1\n", script);
+        assertEquals(after, LineDiff.apply(before, script));
+    }
+
+    @Test
+    void replaysEdgeCases() {
+        String[][] pairs = {
+                { "same\ntext", "same\ntext" },
+                { "", "first line" },
+                { "only line", "" },
+                { "a\nb", "a\nb\n" },
+                { "a\n\n\nb", "a\nb" },
+                { "a\nb\nc", "c\nb\na" },
+                { "+plus\n-minus\n=equals", "=equals\n+plus\n-1" },
+        };
+        for (String[] pair : pairs)
+            assertEquals(pair[1], LineDiff.apply(pair[0], delta(pair[0], pair[1])), () -> Arrays.toString(pair));
+    }
+
+    @Test
+    void replaysRandomEdits() {
+        Random random = new Random(3);
+        for (int round = 0; round < 1000; round++) {
+            List<String> before = randomLines(random, random.nextInt(30));
+            List<String> after = new ArrayList<>(before);
+            int edits = random.nextInt(6);
+            for (int e = 0; e < edits; e++) {
+                int position = after.isEmpty() ? 0 : random.nextInt(after.size());
+                switch (random.nextInt(3)) {
+                    case 0 -> after.add(position, "line " + random.nextInt(8));
+                    case 1 -> {
+                        if (!after.isEmpty())
+                            after.remove(position);
+                    }
+                    default -> {
+                        if (!after.isEmpty())
+                            after.set(position, "line " + random.nextInt(8));
+                    }
+                }
+            }
+            String from = String.join("\n", before);
+            String to = String.join("\n", after);
+            assertEquals(to, LineDiff.apply(from, delta(from, to)), () -> from + "\n---\n" + to);
+        }
+    }
+
+    @Test
+    void replaysRewritesAboveTheLcsLimit() {
+        // 2100 x 2100 differing lines exceed the LCS cell limit, so the middle is encoded as drop-all plus insert-all
+        List<String> before = new ArrayList<>();
+        List<String> after = new ArrayList<>();
+        for (int i = 0; i < 2100; i++) {
+            before.add("old " + i);
+            after.add("new " + i);
+        }
+        String from = "header\n" + String.join("\n", before) + "\nfooter";
+        String to = "header\n" + String.join("\n", after) + "\nfooter";
+
+        String script = delta(from, to);
+
+        assertTrue(script.startsWith("=1\n-2100\n+new 0\n"));
+        assertTrue(script.endsWith("+new 2099\n=1\n"));
+        assertEquals(to, LineDiff.apply(from, script));
+    }
+
+    @Test
+    void rejectsCorruptScripts() {
+        assertThrows(IllegalStateException.class, () -> LineDiff.apply("a", "?1\n"));
+    }
+
+    @Test
+    void unifiedShowsEveryLine() {
+        assertEquals(List.of(" a", "-b", "+c", " d"), LineDiff.unified("a\nb\nd", "a\nc\nd"));
+    }
+
+    private static String delta(String from, String to) {
+        return LineDiff.encode(LineDiff.edits(LineDiff.lines(from), LineDiff.lines(to)));
+    }
+
+    private static List<String> randomLines(Random random, int count) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++)
+            lines.add("line " + random.nextInt(8)); // few distinct lines, so matches are ambiguous
+        return lines;
+    }
+}
@@ -0,0 +1,87 @@
+package com.aiuml.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequirementsDiffTest {
+
+    @Test
+    void movedAndReflowedParagraphsAreNoChange() {
+        String before = "Customers place orders.\n\nEach order has  many\nitems.\n\nAdmins manage products.";
+        String after = "Admins manage products.\n\n  Each order has many items.  \n\n\nCustomers place orders.\n";
+
+        RequirementsDiff diff = RequirementsDiff.between(before, after);
+
+        assertTrue(diff.isEmpty());
+        assertEquals(0.0, diff.getChangedRatio());
+    }
+
+    @Test
+    void reportsAddedAndRemovedParagraphs() {
+        RequirementsDiff diff = RequirementsDiff.between(
+                "Customers place orders.\n\nOrders are paid by card.",
+                "Customers place orders.\n\nOrders are paid by card or invoice.\n\nInvoices are sent monthly.");
+
+        assertEquals(List.of("Orders are paid by card or invoice.", "Invoices are sent monthly."), diff.getAdded());
+        assertEquals(List.of("Orders are paid by card."), diff.getRemoved());
+        assertTrue(diff.getChangedRatio() > 0 && diff.getChangedRatio() < 1);
+    }
+
+    @Test
+    void countsRepeatedParagraphsAsAMultiset() {
+        RequirementsDiff diff = RequirementsDiff.between("A user logs in.\n\nA user logs in.\n\nA user logs out.",
+                "A user logs in.\n\nA user logs out.\n\nA user logs out.");
+
+        assertEquals(List.of("A user logs out."), diff.getAdded());
+        assertEquals(List.of("A user logs in."), diff.getRemoved());
+    }
+
+    @Test
+    void rewriteChangesEverything() {
+        RequirementsDiff diff = RequirementsDiff.between("Old text.", "Completely new text.");
+
+        assertEquals(1.0, diff.getChangedRatio());
+        assertEquals(1.0, RequirementsDiff.between(null, "Fresh requirements.").getChangedRatio());
+    }
+
+    @Test
+    void applyingTheDiffToThePreviousParagraphsYieldsTheCurrentOnes() {
+        Random random = new Random(42);
+        String[] pool = { "Customers place orders.", "Orders contain items.", "Items reference products.",
+                "Admins manage products.", "Payments settle orders.", "Couriers deliver parcels." };
+        for (int round = 0; round < 500; round++) {
+            String before = document(random, pool);
+            String after = document(random, pool);
+
+            RequirementsDiff diff = RequirementsDiff.between(before, after);
+
+            Map<String, Integer> patched = counts(RequirementsDiff.paragraphs(before));
+            diff.getRemoved().forEach(p -> patched.merge(p, -1, Integer::sum));
+            diff.getAdded().forEach(p -> patched.merge(p, 1, Integer::sum));
+            patched.values().removeIf(count -> count == 0);
+            assertEquals(counts(RequirementsDiff.paragraphs(after)), patched, () -> before + "\n---\n" + after);
+            assertEquals(diff.isEmpty(), patched.equals(counts(RequirementsDiff.paragraphs(before))));
+        }
+    }
+
+    private static String document(Random random, String[] pool) {
+        List<String> paragraphs = new ArrayList<>();
+        int count = random.nextInt(6);
+        for (int i = 0; i < count; i++)
+            paragraphs.add(pool[random.nextInt(pool.length)]);
+        return String.join("\n\n", paragraphs);
+    }
+
+    private static Map<String, Integer> counts(List<String> paragraphs) {
+        Map<String, Integer> counts = new HashMap<>();
+        paragraphs.forEach(p -> counts.merge(p, 1, Integer::sum));
+        return counts;
+    }
+}
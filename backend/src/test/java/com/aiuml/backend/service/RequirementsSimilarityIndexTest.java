@@ -0,0 +1,127 @@
+package com.aiuml.backend.service;
+
+import com.aiuml.backend.model.Diagram;
+import com.aiuml.backend.model.Project;
+import com.aiuml.backend.repository.DiagramRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RequirementsSimilarityIndexTest {
+    private static final double THRESHOLD = 0.85; // the default of aiuml.similarity.threshold
+    private static final int MAX_DISTANCE = 9;
+
+    private final Map<Long, Diagram> diagrams = new HashMap<>();
+    private final Random random = new Random(7);
+    private RequirementsSimilarityIndex index;
+
+    @BeforeEach
+    void setUp() {
+        DiagramRepository diagramRepository = mock(DiagramRepository.class);
+        when(diagramRepository.findById(anyLong()))
+                .thenAnswer(invocation -> Optional.ofNullable(diagrams.get(invocation.<Long>getArgument(0))));
+        index = new RequirementsSimilarityIndex(diagramRepository);
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "threshold", THRESHOLD);
+        index.initBands();
+    }
+
+    @Test
+    void nearDuplicateTextsHaveCloseFingerprints() {
+        int close = 0;
+        for (int i = 0; i < 200; i++) {
+            String text = words(60);
+            long original = SimHash.fingerprint(SimHash.tokenize(text));
+
+            assertEquals(original, SimHash.fingerprint(SimHash.tokenize(text.toUpperCase() + " !")));
+            if (SimHash.similarity(original, SimHash.fingerprint(SimHash.tokenize(edit(text, 1)))) >= THRESHOLD)
+                close++;
+            assertTrue(SimHash.similarity(original, SimHash.fingerprint(SimHash.tokenize(words(60)))) < THRESHOLD);
+        }
+        // A one-word edit touches 3 of 58 shingles; about 90% of such pairs stay within the threshold
+        int matched = close;
+        assertTrue(matched >= 160, () -> matched + " of 200 one-word edits within threshold");
+    }
+
+    /**
+     * Banding with one-bit probes must find exactly what a linear scan finds: every stored fingerprint within
+     * the threshold is a candidate, so the best match and its similarity agree, and nothing beyond it is returned.
+     */
+    @Test
+    void findsEveryMatchALinearScanFinds() {
+        List<Long> fingerprints = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        for (long id = 1; id <= 400; id++) {
+            String text = words(60);
+            texts.add(text);
+            fingerprints.add(register(id, id, "CLASS", text));
+        }
+
+        int withinThreshold = 0;
+        for (int query = 0; query < 1000; query++) {
+            String text = edit(texts.get(random.nextInt(texts.size())), random.nextInt(8));
+            long fingerprint = SimHash.fingerprint(SimHash.tokenize(text));
+            int nearest = fingerprints.stream().mapToInt(stored -> Long.bitCount(stored ^ fingerprint)).min().orElseThrow();
+
+            Optional<RequirementsSimilarityIndex.NearDuplicate> found = index.findNearDuplicate(0L, "class", text);
+
+            if (nearest <= MAX_DISTANCE) {
+                withinThreshold++;
+                assertTrue(found.isPresent(), () -> "missed a match at distance " + nearest);
+                assertEquals(1.0 - nearest / 64.0, found.get().similarity(), 1e-9);
+            } else {
+                assertTrue(found.isEmpty(), () -> "matched beyond the threshold at distance " + nearest);
+            }
+        }
+        // Both outcomes must be exercised for the comparison to mean anything
+        int matched = withinThreshold;
+        assertTrue(matched > 200 && matched < 900, () -> matched + " of 1000 within threshold");
+    }
+
+    @Test
+    void ignoresOwnProjectOtherTypesAndShortTexts() {
+        String text = words(60);
+        register(1, 10, "SEQUENCE", text);
+        register(2, 20, "CLASS", text);
+
+        assertEquals(2L, index.findNearDuplicate(10L, "CLASS", text).orElseThrow().diagram().getId());
+        assertTrue(index.findNearDuplicate(20L, "CLASS", text).isEmpty());
+        assertTrue(index.findNearDuplicate(30L, "USECASE", text).isEmpty());
+        assertTrue(index.findNearDuplicate(30L, "CLASS", words(10)).isEmpty());
+    }
+
+    private long register(long diagramId, long projectId, String type, String text) {
+        Long fingerprint = index.fingerprint(text);
+        Diagram diagram = Diagram.builder()
+                .id(diagramId)
+                .type(type)
+                .project(Project.builder().id(projectId).build())
+                .requirementsFingerprint(fingerprint)
+                .build();
+        diagrams.put(diagramId, diagram);
+        index.register(diagram);
+        return fingerprint;
+    }
+
+    private String words(int count) {
+        StringJoiner text = new StringJoiner(" ");
+        for (int i = 0; i < count; i++)
+            text.add("w" + random.nextInt(5000));
+        return text.toString();
+    }
+
+    // Replaces {@code edits} random words, as a light revision of the same requirements would
+    private String edit(String text, int edits) {
+        String[] tokens = text.split(" ");
+        for (int i = 0; i < edits; i++)
+            tokens[random.nextInt(tokens.length)] = "x" + random.nextInt(5000);
+        return String.join(" ", tokens);
+    }
+}
@@ -0,0 +1,88 @@
+package com.aiuml.backend.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput of the usage recording path (map lookup plus adder increments) under concurrency, with a flush
+ * draining the map as in production. Not a unit test; run it on the machine whose numbers matter:
+ *
+ * <pre>
+ *   mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *       com.aiuml.backend.service.UsageAggregatorBenchmark [seconds-per-run] [thread counts...]
+ * </pre>
+ *
+ * For each thread count it prints the aggregate and per-thread cost of one {@code recordCall}, once with every
+ * thread billing the same user (all threads hit the same adders) and once with a user per thread.
+ */
+public class UsageAggregatorBenchmark {
+    private static final long FLUSH_INTERVAL_MS = 100;
+
+    public static void main(String[] args) throws Exception {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 3;
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int i = 1; i < args.length; i++)
+            threadCounts.add(Integer.parseInt(args[i]));
+        if (threadCounts.isEmpty())
+            threadCounts = List.of(1, 2, 4, 8, 16, 32);
+
+        System.out.printf("%d available processor(s), %d s per run%n", Runtime.getRuntime().availableProcessors(), seconds);
+        run(1, 1, false); // warm-up
+        for (boolean sharedUser : new boolean[] { true, false }) {
+            System.out.println(sharedUser ? "one user shared by all threads" : "one user per thread");
+            for (int threads : threadCounts)
+                report(threads, run(threads, seconds, sharedUser));
+        }
+    }
+
+    private static long run(int threads, long seconds, boolean sharedUser) throws InterruptedException {
+        UsageAggregator aggregator = new UsageAggregator(null, new DiscardingJdbcTemplate());
+        LongAdder operations = new LongAdder();
+        CountDownLatch ready = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long userId = sharedUser ? 1 : t + 1;
+            Thread worker = new Thread(() -> UsageContext.call(userId, () -> {
+                ready.countDown();
+                long count = 0;
+                while ((count & 1023) != 0 || System.nanoTime() < deadline) {
+                    aggregator.recordCall("gemini-2.0-flash", true, 1200, 300);
+                    count++;
+                }
+                operations.add(count);
+                return null;
+            }));
+            workers.add(worker);
+            worker.start();
+        }
+        ready.await();
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(FLUSH_INTERVAL_MS);
+            aggregator.flush();
+        }
+        for (Thread worker : workers)
+            worker.join();
+        return operations.sum() / seconds;
+    }
+
+    // Accepts every flush without a database, so only the in-memory side is measured
+    private static final class DiscardingJdbcTemplate extends JdbcTemplate {
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            return new int[batchArgs.size()];
+        }
+    }
+
+    private static void report(int threads, long perSecond) {
+        double aggregateNs = 1e9 / perSecond;
+        System.out.printf("  %2d thread(s): %,12d calls/s  %6.1f ns/call aggregate  %7.1f ns/call per thread%n",
+                threads, perSecond, aggregateNs, aggregateNs * threads);
+    }
+}
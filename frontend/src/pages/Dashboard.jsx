@@ -12,6 +12,7 @@ const Dashboard = () => {
     const [viewMode, setViewMode] = useState('grid');
     const [isLoading, setIsLoading] = useState(true);
     const [searchQuery, setSearchQuery] = useState('');
+    const [searchHits, setSearchHits] = useState(null); // ids ranked by the server, null = not searching
 
     useEffect(() => {
         if (!isAuthenticated) {
@@ -21,6 +22,24 @@ const Dashboard = () => {
         fetchProjects();
     }, [isAuthenticated, navigate]);
 
+    // Server-side full-text search also matches descriptions and requirements, debounced while typing
+    useEffect(() => {
+        if (searchQuery.trim().length < 2) {
+            setSearchHits(null);
+            return;
+        }
+        const timer = setTimeout(async () => {
+            try {
+                const result = await projectService.searchProjects(searchQuery.trim());
+                setSearchHits(result.content.map(hit => hit.id));
+            } catch (error) {
+                console.error("Search failed, falling back to name filter:", error);
+                setSearchHits(null);
+            }
+        }, 300);
+        return () => clearTimeout(timer);
+    }, [searchQuery]);
+
     const fetchProjects = async () => {
         setIsLoading(true);
         try {
@@ -62,6 +81,11 @@ const Dashboard = () => {
             await projectService.updateProject(project.id, { ...project, name: newName });
             fetchProjects();
         } catch (error) {
+            if (error.response?.status === 412) {
+                alert("This project was changed elsewhere. The list has been refreshed, please try again.");
+                fetchProjects();
+                return;
+            }
             alert("Failed to update project");
         }
     };
@@ -77,9 +101,11 @@ const Dashboard = () => {
         }
     };
 
-    const filteredProjects = projects.filter(p =>
-        p.name.toLowerCase().includes(searchQuery.toLowerCase())
-    );
+    const filteredProjects = searchHits
+        ? searchHits.map(id => projects.find(p => p.id === id)).filter(Boolean)
+        : projects.filter(p =>
+            p.name.toLowerCase().includes(searchQuery.toLowerCase())
+        );
 
     return (
         <div className="min-h-screen pt-32 pb-20">
@@ -51,7 +51,7 @@ const ProjectViewer = () => {
                     if (project.patternSuggestions && project.patternSuggestions.length > 0) {
                         const patternsObj = {};
                         project.patternSuggestions.forEach(p => {
-                            patternsObj[p.patternName] = p.description;
+                            patternsObj[p.name] = p.explanation;
                         });
                         setDiagramData(prev => ({
                             ...prev,
@@ -70,12 +70,22 @@ const ProjectViewer = () => {
     }, [navigate, id]);
 
     const handleFileUpload = async (e) => {
-        const file = e.target.files[0];
-        if (!file) return;
+        const files = e.target.files;
+        if (!files || files.length === 0) return;
+        const file = files[0];
 
         try {
-            const result = await projectService.uploadRequirements(id, file);
-            setRequirements(result.content);
+            if (files.length > 1 || file.name.toLowerCase().endsWith('.zip')) {
+                const result = await projectService.uploadRequirementsBatch(id, files);
+                setRequirements(result.content);
+                const failed = (result.files || []).filter(f => f.error);
+                if (failed.length > 0) {
+                    alert(`Some files could not be read:\n${failed.map(f => `${f.fileName}: ${f.error}`).join('\n')}`);
+                }
+            } else {
+                const result = await projectService.uploadRequirements(id, file);
+                setRequirements(result.content);
+            }
         } catch (error) {
             console.error("Upload failed:", error);
             alert("Failed to upload file.");
@@ -204,7 +214,8 @@ const ProjectViewer = () => {
                                     type="file"
                                     ref={fileInputRef}
                                     className="hidden"
-                                    accept=".txt,.md,.java,.pdf,.doc,.docx"
+                                    accept=".txt,.md,.java,.pdf,.doc,.docx,.zip"
+                                    multiple
                                     onChange={handleFileUpload}
                                 />
                             </div>
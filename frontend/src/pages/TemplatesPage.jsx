@@ -74,10 +74,9 @@ const TemplatesPage = () => {
 
     const handleUseTemplate = async (template) => {
         try {
-            const newProject = await projectService.createProject(
-                template.title,
-                template.description
-            );
+            // The backend catalog stores the template's prepared diagram with the project
+            const newProject = await projectService.createProjectFromTemplate(template.id)
+                .catch(() => projectService.createProject(template.title, template.description));
             navigate(`/project/${newProject.id}`, { state: { initialRequirements: template.requirements } });
         } catch (error) {
             console.error("Failed to use template:", error);
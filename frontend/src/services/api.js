@@ -24,6 +24,9 @@ api.interceptors.request.use(
     }
 );
 
+// Last body and ETag per project id, revalidated with If-None-Match so unchanged projects come back as 304
+const projectCache = new Map();
+
 export const authService = {
     login: async (email, password) => {
         const response = await api.post('/auth/signin', { email, password });
@@ -37,6 +40,7 @@ export const authService = {
     },
     logout: () => {
         localStorage.removeItem('user');
+        projectCache.clear();
     },
     getCurrentUser: () => {
         return JSON.parse(localStorage.getItem('user'));
@@ -55,33 +59,97 @@ export const projectService = {
         return response.data;
     },
 
+    createProjectFromTemplate: async (templateId) => {
+        const response = await api.post(`/templates/${templateId}/projects`);
+        return response.data;
+    },
+
     getUserProjects: async () => {
         const user = authService.getCurrentUser();
         const response = await api.get(`/projects/user/${user.id}`);
         return response.data;
     },
 
+    searchProjects: async (query, page = 0, size = 20) => {
+        const response = await api.get('/projects/search', { params: { q: query, page, size } });
+        return response.data;
+    },
+
     getProject: async (id) => {
-        const response = await api.get(`/projects/${id}`);
+        const cached = projectCache.get(String(id));
+        const response = await api.get(`/projects/${id}`, {
+            headers: cached ? { 'If-None-Match': cached.etag } : {},
+            validateStatus: (status) => (status >= 200 && status < 300) || (status === 304 && !!cached),
+        });
+        if (response.status === 304) {
+            return cached.data;
+        }
+        if (response.headers.etag) {
+            projectCache.set(String(id), { etag: response.headers.etag, data: response.data });
+        }
         return response.data;
     },
 
     analyzeProject: async (projectId, requirements, type = 'CLASS') => {
-        const response = await api.post(`/projects/${projectId}/analyze`, { requirements, type });
+        // Tell the backend how long we will wait, slightly less than our own timeout, so it stops in time
+        const response = await api.post(`/projects/${projectId}/analyze`, { requirements, type }, {
+            headers: { 'X-Request-Timeout-Ms': api.defaults.timeout - 5000 },
+        });
         return response.data;
     },
 
+    // Streams server-sent events: onResult is called per project as it finishes; resolves with the final counts
+    analyzeBatch: async (items, onResult, incremental = true) => {
+        const user = authService.getCurrentUser();
+        const response = await fetch(`${API_BASE_URL}/projects/analyze/batch`, {
+            method: 'POST',
+            headers: {
+                'Content-Type': 'application/json',
+                'Accept': 'text/event-stream',
+                ...(user && user.token ? { 'Authorization': 'Bearer ' + user.token } : {}),
+            },
+            body: JSON.stringify({ items, incremental }),
+        });
+        if (!response.ok) {
+            throw new Error(`Batch analysis failed with status ${response.status}`);
+        }
+        const reader = response.body.getReader();
+        const decoder = new TextDecoder();
+        let buffer = '';
+        let summary = null;
+        for (;;) {
+            const { done, value } = await reader.read();
+            if (done) break;
+            buffer += decoder.decode(value, { stream: true });
+            let boundary;
+            while ((boundary = buffer.indexOf('\n\n')) >= 0) {
+                const block = buffer.slice(0, boundary);
+                buffer = buffer.slice(boundary + 2);
+                const event = (block.match(/^event:(.*)$/m) || [])[1]?.trim();
+                const data = block.split('\n').filter(line => line.startsWith('data:')).map(line => line.slice(5)).join('\n');
+                if (!data) continue;
+                if (event === 'done') summary = JSON.parse(data);
+                else onResult(JSON.parse(data));
+            }
+        }
+        return summary;
+    },
+
     updateProject: async (id, projectData) => {
-        const response = await api.put(`/projects/${id}`, projectData);
+        // Send the version we last saw so the backend rejects the write (412) if another tab changed it
+        const headers = projectData.version != null ? { 'If-Match': `"${projectData.version}"` } : {};
+        const response = await api.put(`/projects/${id}`, projectData, { headers });
         return response.data;
     },
 
     deleteProject: async (id) => {
+        projectCache.delete(String(id));
         const response = await api.delete(`/projects/${id}`);
         return response.data;
     },
 
     deleteAllProjects: async () => {
+        projectCache.clear();
         const user = authService.getCurrentUser();
         const response = await api.delete(`/projects/user/${user.id}`);
         return response.data;
@@ -97,6 +165,34 @@ export const projectService = {
         });
         return response.data;
     },
+
+    uploadRequirementsBatch: async (projectId, files) => {
+        const formData = new FormData();
+        Array.from(files).forEach(file => formData.append('files', file));
+        const response = await api.post(`/projects/${projectId}/upload/batch`, formData, {
+            headers: {
+                'Content-Type': 'multipart/form-data',
+            },
+        });
+        return response.data;
+    },
+
+    getDiagramHistory: async (projectId, type) => {
+        const response = await api.get(`/projects/${projectId}/diagrams/${type}/versions`);
+        return response.data;
+    },
+
+    getDiagramVersion: async (projectId, type, version) => {
+        const response = await api.get(`/projects/${projectId}/diagrams/${type}/versions/${version}`);
+        return response.data;
+    },
+
+    compareDiagramVersions: async (projectId, type, from, to) => {
+        const response = await api.get(`/projects/${projectId}/diagrams/${type}/versions/compare`, {
+            params: { from, to },
+        });
+        return response.data;
+    },
 };
 
 export default api;
@@ -0,0 +1,60 @@
+#!/usr/bin/env bash
+# Signin storm: measures signin throughput and latency, and the latency of an unrelated API call under the storm.
+#
+#   scripts/signin-storm.sh [base-url] [requests] [concurrency]
+#
+# Prints signin throughput, p50/p95/p99 latency and status counts, then the same percentiles for
+# GET /api/templates issued while the storm runs. Compare the server's view under /actuator/metrics:
+# aiuml.auth.hashing, aiuml.auth.hashing.queue, aiuml.auth.hashing.rejected and http.server.requests.
+# Re-run with a different aiuml.executor.hashing.threads / queue-capacity to see the trade-off.
+set -euo pipefail
+
+BASE=${1:-http://localhost:8080}
+REQUESTS=${2:-500}
+CONCURRENCY=${3:-50}
+EMAIL="storm-$(date +%s)@example.com"
+PASSWORD="storm-password"
+OUT=$(mktemp -d)
+trap 'rm -rf "$OUT"' EXIT
+
+curl -s -o /dev/null -X POST "$BASE/api/auth/signup" -H 'Content-Type: application/json' \
+    -d "{\"email\":\"$EMAIL\",\"name\":\"Storm\",\"password\":\"$PASSWORD\"}"
+TOKEN=$(curl -s -X POST "$BASE/api/auth/signin" -H 'Content-Type: application/json' \
+    -d "{\"email\":\"$EMAIL\",\"password\":\"$PASSWORD\"}" | sed -n 's/.*"token":"\([^"]*\)".*/\1/p')
+
+signin() {
+    curl -s -o /dev/null -w '%{http_code} %{time_total}\n' -X POST "$BASE/api/auth/signin" \
+        -H 'Content-Type: application/json' -d "{\"email\":\"$EMAIL\",\"password\":\"$PASSWORD\"}"
+}
+probe() {
+    curl -s -o /dev/null -w '%{http_code} %{time_total}\n' "$BASE/api/templates" -H "Authorization: Bearer $TOKEN"
+}
+export -f signin probe
+export BASE EMAIL PASSWORD TOKEN
+
+summarize() {
+    sort -k2 -n "$1" | awk -v label="$2" -v elapsed="${3:-0}" '
+        { status[$1]++; t[NR] = $2 }
+        END {
+            if (NR == 0) { print label ": no samples"; exit }
+            printf "%s: %d requests", label, NR
+            if (elapsed > 0) printf ", %.1f req/s", NR / elapsed
+            p95 = int(NR * 0.95); if (p95 < 1) p95 = 1
+            p99 = int(NR * 0.99); if (p99 < 1) p99 = 1
+            printf ", p50 %.0f ms, p95 %.0f ms, p99 %.0f ms\n", t[int(NR * 0.50) + 1] * 1000, t[p95] * 1000, t[p99] * 1000
+            for (code in status) printf "  HTTP %s: %d\n", code, status[code]
+        }'
+}
+
+start=$(date +%s.%N)
+seq "$REQUESTS" | xargs -P "$CONCURRENCY" -I{} bash -c signin > "$OUT/signin" &
+storm=$!
+while kill -0 "$storm" 2>/dev/null; do
+    probe >> "$OUT/probe"
+    sleep 0.2
+done
+wait "$storm"
+elapsed=$(awk -v start="$start" -v end="$(date +%s.%N)" 'BEGIN { print end - start }')
+
+summarize "$OUT/signin" "signin" "$elapsed"
+summarize "$OUT/probe" "GET /api/templates during storm"